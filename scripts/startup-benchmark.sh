@@ -0,0 +1,77 @@
+#!/bin/sh
+# Time from JVM launch until /actuator/health/readiness reports UP, for the plain boot jar and
+# for the fast startup layout with its optimizations added one at a time (thin jar, CDS archive,
+# lazy initialization and, if built with -PfastStartup, the AOT processed context), so each
+# one's share shows. Usually run through ./gradlew startupBenchmark.
+#
+# The results are printed and written to the report file together with the JVM and machine
+# they were measured on.
+#
+# usage: startup-benchmark.sh <boot jar> <fast startup dir> <aot enabled: true|false> <report>
+set -eu
+
+BOOT_JAR=$(realpath "$1")
+FAST_DIR=$2
+AOT=$3
+REPORT=$(realpath -m "$4")
+RUNS=${RUNS:-5}
+PORT=${PORT:-18081}
+
+now_ms() {
+  date +%s%3N
+}
+
+# runs the given command in the background and prints the milliseconds until it is ready
+time_to_ready() {
+  start=$(now_ms)
+  "$@" --server.port="$PORT" >/dev/null 2>&1 &
+  pid=$!
+  until curl -sf "http://localhost:$PORT/actuator/health/readiness" >/dev/null 2>&1; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "application exited before it was ready" >&2
+      exit 1
+    fi
+    sleep 0.02
+  done
+  echo $(($(now_ms) - start))
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+}
+
+benchmark() {
+  name=$1
+  shift
+  total=0
+  best=
+  i=0
+  while [ "$i" -lt "$RUNS" ]; do
+    ms=$(time_to_ready "$@")
+    total=$((total + ms))
+    if [ -z "$best" ] || [ "$ms" -lt "$best" ]; then
+      best=$ms
+    fi
+    i=$((i + 1))
+  done
+  printf '%-28s mean %6d ms   best %6d ms   (%d runs)\n' "$name" $((total / RUNS)) "$best" \
+    "$RUNS" | tee -a "$REPORT"
+}
+
+mkdir -p "$(dirname "$REPORT")"
+{
+  echo "Startup benchmark, $(date -u +%Y-%m-%dT%H:%M:%SZ)"
+  java -version 2>&1 | head -1
+  echo "$(nproc) CPUs, $(awk '/MemTotal/ {print int($2 / 1024)}' /proc/meminfo) MB"
+  echo
+} >"$REPORT"
+
+benchmark "boot jar" java -jar "$BOOT_JAR"
+cd "$FAST_DIR"
+benchmark "thin jar" java -jar payment-gateway.jar
+benchmark "thin jar + CDS" java -XX:SharedArchiveFile=payment-gateway.jsa -jar payment-gateway.jar
+benchmark "thin jar + CDS + lazy init" java -XX:SharedArchiveFile=payment-gateway.jsa \
+  -jar payment-gateway.jar --spring.profiles.active=fast-startup
+if [ "$AOT" = true ]; then
+  benchmark "thin jar + CDS + lazy + AOT" java -XX:SharedArchiveFile=payment-gateway.jsa \
+    -Dspring.aot.enabled=true -jar payment-gateway.jar --spring.profiles.active=fast-startup
+fi
+echo "Written to $REPORT"
@@ -1,11 +1,14 @@
 package com.checkout.payment.gateway;
 
+import com.checkout.payment.gateway.configuration.TrainingRunListener;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
 @SpringBootApplication
 public class PaymentGatewayApplication {
   public static void main(String[] args) {
-    SpringApplication.run(PaymentGatewayApplication.class, args);
+    SpringApplication application = new SpringApplication(PaymentGatewayApplication.class);
+    application.addListeners(new TrainingRunListener());
+    application.run(args);
   }
 }
@@ -0,0 +1,10 @@
+package com.checkout.payment.gateway.bin;
+
+/**
+ * A range of card number prefixes, as {@value BinTable#KEY_DIGITS} digit numbers.
+ *
+ * @param issuer empty when the range only identifies the scheme
+ * @param supported false for ranges the gateway recognises but can't process
+ */
+public record BinRange(int low, int high, String scheme, String issuer, boolean supported) {
+}
@@ -0,0 +1,194 @@
+package com.checkout.payment.gateway.bin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable lookup table from card numbers to {@link BinRange}s.
+ *
+ * <p>Ranges may be nested, e.g. an issuer's range inside its scheme's, in which case the
+ * innermost one applies. Nesting is resolved when the table is built, by cutting the ranges into
+ * disjoint segments kept in sorted primitive arrays, so a lookup is a single binary search that
+ * doesn't allocate.
+ */
+public final class BinTable {
+
+  static final int KEY_DIGITS = 8;
+
+  private static final BinTable EMPTY = new BinTable(new int[0], new int[0], new BinRange[0]);
+
+  private final int[] lows;
+  private final int[] highs;
+  private final BinRange[] ranges;
+
+  private BinTable(int[] lows, int[] highs, BinRange[] ranges) {
+    this.lows = lows;
+    this.highs = highs;
+    this.ranges = ranges;
+  }
+
+  public static BinTable empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Reads ranges in the format {@code low,high,scheme,issuer,supported}, one per line, where
+   * {@code low} and {@code high} are card number prefixes of 1 to {@value #KEY_DIGITS} digits.
+   * Blank lines and lines starting with {@code #} are skipped.
+   */
+  public static BinTable parse(BufferedReader reader) throws IOException {
+    List<BinRange> ranges = new ArrayList<>();
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.strip();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",", -1);
+      if (fields.length != 5) {
+        throw new IllegalArgumentException("Line " + lineNumber + ": expected 5 fields");
+      }
+      try {
+        ranges.add(new BinRange(
+            key(fields[0].strip(), '0'),
+            key(fields[1].strip(), '9'),
+            fields[2].strip(),
+            fields[3].strip(),
+            Boolean.parseBoolean(fields[4].strip())));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+      }
+    }
+    return of(ranges);
+  }
+
+  public static BinTable of(List<BinRange> ranges) {
+    List<BinRange> sorted = new ArrayList<>(ranges);
+    // outer ranges before the ranges nested in them
+    sorted.sort(Comparator.comparingInt(BinRange::low)
+        .thenComparing(Comparator.comparingInt(BinRange::high).reversed()));
+
+    Segments segments = new Segments(sorted.size());
+    Deque<BinRange> open = new ArrayDeque<>();
+    long cursor = Long.MIN_VALUE;
+    for (BinRange range : sorted) {
+      if (range.low() > range.high()) {
+        throw new IllegalArgumentException("Range starts after its end: " + range);
+      }
+      while (!open.isEmpty() && open.peek().high() < range.low()) {
+        BinRange closed = open.pop();
+        cursor = segments.add(cursor, closed.high(), closed);
+      }
+      BinRange enclosing = open.peek();
+      if (enclosing != null) {
+        if (range.high() > enclosing.high()
+            || (range.low() == enclosing.low() && range.high() == enclosing.high())) {
+          throw new IllegalArgumentException(
+              "Ranges overlap without one containing the other: " + enclosing + ", " + range);
+        }
+        segments.add(cursor, range.low() - 1, enclosing);
+      }
+      cursor = range.low();
+      open.push(range);
+    }
+    while (!open.isEmpty()) {
+      BinRange closed = open.pop();
+      cursor = segments.add(cursor, closed.high(), closed);
+    }
+    return segments.toTable();
+  }
+
+  /**
+   * @return the range of the card number, or null if it is not in any range
+   */
+  public BinRange lookup(CharSequence cardNumber) {
+    int key = key(cardNumber);
+    if (key < 0) {
+      return null;
+    }
+    int low = 0;
+    int high = lows.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (lows[mid] <= key) {
+        if (key <= highs[mid]) {
+          return ranges[mid];
+        }
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of disjoint segments the ranges were cut into
+   */
+  public int size() {
+    return lows.length;
+  }
+
+  private static int key(CharSequence cardNumber) {
+    if (cardNumber == null || cardNumber.length() < KEY_DIGITS) {
+      return -1;
+    }
+    int key = 0;
+    for (int i = 0; i < KEY_DIGITS; i++) {
+      char c = cardNumber.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      key = key * 10 + (c - '0');
+    }
+    return key;
+  }
+
+  private static int key(String prefix, char padding) {
+    if (!prefix.matches("\\d{1," + KEY_DIGITS + "}")) {
+      throw new IllegalArgumentException("Invalid BIN prefix '" + prefix + "'");
+    }
+    return Integer.parseInt(prefix + String.valueOf(padding).repeat(KEY_DIGITS - prefix.length()));
+  }
+
+  private static final class Segments {
+
+    private int[] lows;
+    private int[] highs;
+    private BinRange[] ranges;
+    private int size;
+
+    private Segments(int capacity) {
+      // every range adds at most two segments
+      this.lows = new int[2 * capacity];
+      this.highs = new int[2 * capacity];
+      this.ranges = new BinRange[2 * capacity];
+    }
+
+    /**
+     * @return the position after the segment
+     */
+    private long add(long from, int to, BinRange range) {
+      if (from <= to) {
+        lows[size] = (int) from;
+        highs[size] = to;
+        ranges[size] = range;
+        size++;
+      }
+      return (long) to + 1;
+    }
+
+    private BinTable toTable() {
+      return new BinTable(Arrays.copyOf(lows, size), Arrays.copyOf(highs, size),
+          Arrays.copyOf(ranges, size));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.checkout.payment.gateway.bin;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+
+/**
+ * Holds the current {@link BinTable}. The table file is checked for changes periodically and a
+ * changed file is loaded into a new table, which replaces the current one in a single write, so
+ * lookups never wait for a reload. A file that fails to load is logged and the previous table
+ * stays in use.
+ */
+@Slf4j
+public class BinTableRegistry implements Closeable {
+
+  private final Resource location;
+  private final boolean enabled;
+  private final ScheduledExecutorService reloader;
+  private volatile BinTable table;
+  private long lastModified;
+
+  private BinTableRegistry(Resource location, boolean enabled) {
+    this.location = location;
+    this.enabled = enabled;
+    this.table = BinTable.empty();
+    this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "bin-table-reloader");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * @throws IOException if the table can't be loaded, so a bad file fails startup
+   */
+  public static BinTableRegistry load(Resource location) throws IOException {
+    BinTableRegistry registry = new BinTableRegistry(location, true);
+    registry.reload();
+    return registry;
+  }
+
+  /**
+   * A registry without table, for which every card number is in an unknown range.
+   */
+  public static BinTableRegistry disabled() {
+    return new BinTableRegistry(null, false);
+  }
+
+  public void startReloading(Duration interval) {
+    reloader.scheduleWithFixedDelay(() -> {
+      try {
+        if (location.lastModified() != lastModified) {
+          reload();
+        }
+      } catch (IOException | RuntimeException e) {
+        log.error("Failed to reload BIN table from {}, keeping the current table",
+            location.getDescription(), e);
+      }
+    }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  public synchronized void reload() throws IOException {
+    long modified = location.lastModified();
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(location.getInputStream(), StandardCharsets.UTF_8))) {
+      table = BinTable.parse(reader);
+    }
+    lastModified = modified;
+    log.info("Loaded BIN table from {} with {} segments", location.getDescription(),
+        table.size());
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the range of the card number, or null if it is not in any range
+   */
+  public BinRange lookup(CharSequence cardNumber) {
+    return table.lookup(cardNumber);
+  }
+
+  @Override
+  public void close() {
+    reloader.shutdownNow();
+  }
+}
@@ -0,0 +1,121 @@
+package com.checkout.payment.gateway.cache;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Serialized responses of stored payments, so a lookup is a map hit instead of building and
+ * serializing a {@link PaymentResponse}. The only payments that change are pending ones, which
+ * are resolved later and possibly through another instance, so they are not cached and no
+ * entry ever needs invalidating. The cache is bounded by the bytes it holds and evicts the
+ * oldest entries first: payments are mostly polled shortly after they are made.
+ */
+@Component
+public class PaymentResponseCache implements MeterBinder {
+
+  // map node, key, record and ETag of an entry, on top of its JSON
+  private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+  private final ObjectMapper objectMapper;
+  private final long maxBytes;
+  private final ConcurrentHashMap<UUID, SerializedPayment> entries = new ConcurrentHashMap<>();
+  // insertion order, for eviction
+  private final Queue<UUID> order = new ConcurrentLinkedQueue<>();
+  private final AtomicLong bytes = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public PaymentResponseCache(ObjectMapper objectMapper,
+      @Value("${payments.response-cache.max-size:64MB}") DataSize maxSize) {
+    this.objectMapper = objectMapper;
+    this.maxBytes = maxSize.toBytes();
+  }
+
+  /**
+   * @return the cached response, or null
+   */
+  public SerializedPayment get(UUID id) {
+    SerializedPayment payment = entries.get(id);
+    if (payment == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return payment;
+  }
+
+  public SerializedPayment put(PaymentResponse response) {
+    SerializedPayment payment = serialize(response);
+    if (response.getStatus() != PaymentStatus.PENDING
+        && entries.putIfAbsent(response.getId(), payment) == null) {
+      order.add(response.getId());
+      bytes.addAndGet(cost(payment));
+      evict();
+    }
+    return payment;
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public long sizeInBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("payments.response.cache.hits", hits, LongAdder::sum)
+        .register(registry);
+    FunctionCounter.builder("payments.response.cache.misses", misses, LongAdder::sum)
+        .register(registry);
+    Gauge.builder("payments.response.cache.size", this, PaymentResponseCache::sizeInBytes)
+        .baseUnit("bytes")
+        .register(registry);
+  }
+
+  private SerializedPayment serialize(PaymentResponse response) {
+    byte[] json;
+    try {
+      json = objectMapper.writeValueAsBytes(response);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to serialize payment " + response.getId(), e);
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(json);
+    return new SerializedPayment(json, "\"" + Long.toHexString(crc.getValue()) + "\"");
+  }
+
+  private void evict() {
+    while (bytes.get() > maxBytes) {
+      UUID oldest = order.poll();
+      if (oldest == null) {
+        return;
+      }
+      SerializedPayment evicted = entries.remove(oldest);
+      if (evicted != null) {
+        bytes.addAndGet(-cost(evicted));
+      }
+    }
+  }
+
+  private static long cost(SerializedPayment payment) {
+    return payment.json().length + ENTRY_OVERHEAD_BYTES;
+  }
+}
@@ -0,0 +1,8 @@
+package com.checkout.payment.gateway.cache;
+
+/**
+ * A {@code PaymentResponse} as the JSON bytes sent to clients, with the strong ETag of those
+ * bytes. The array is shared between requests and must not be modified.
+ */
+public record SerializedPayment(byte[] json, String etag) {
+}
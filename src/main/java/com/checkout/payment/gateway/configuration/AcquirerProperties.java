@@ -0,0 +1,32 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "acquirer")
+public class AcquirerProperties {
+
+  private String url;
+  // card issuer or scheme (see bin-ranges.csv) -> acquirer URL used instead of url for its cards
+  private Map<String, String> routes = new HashMap<>();
+  private Retry retry = new Retry();
+
+  @Getter
+  @Setter
+  public static class Retry {
+
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofMillis(50);
+    private Duration maxBackoff = Duration.ofSeconds(1);
+    // share of acquirer calls that may be retried, across all payments
+    private double budgetRatio = 0.1;
+    // retries that can be saved up while the acquirer is healthy
+    private int budgetMaxRetries = 100;
+  }
+}
@@ -1,19 +1,18 @@
 package com.checkout.payment.gateway.configuration;
 
-import java.time.Duration;
-import org.springframework.boot.web.client.RestTemplateBuilder;
+import com.checkout.payment.gateway.throttling.RetryBudget;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableConfigurationProperties(AcquirerProperties.class)
 public class ApplicationConfiguration {
 
   @Bean
-  public RestTemplate restTemplate(RestTemplateBuilder builder) {
-    return builder
-        .setConnectTimeout(Duration.ofMillis(10000))
-        .setReadTimeout(Duration.ofMillis(10000))
-        .build();
+  public RetryBudget acquirerRetryBudget(AcquirerProperties properties) {
+    return new RetryBudget(
+        properties.getRetry().getBudgetRatio(),
+        properties.getRetry().getBudgetMaxRetries());
   }
 }
@@ -0,0 +1,25 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import java.io.IOException;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+@Configuration
+@EnableConfigurationProperties(BinTableProperties.class)
+public class BinTableConfiguration {
+
+  @Bean
+  public BinTableRegistry binTableRegistry(BinTableProperties properties,
+      ResourceLoader resourceLoader) throws IOException {
+    if (!properties.isEnabled()) {
+      return BinTableRegistry.disabled();
+    }
+    BinTableRegistry registry =
+        BinTableRegistry.load(resourceLoader.getResource(properties.getLocation()));
+    registry.startReloading(properties.getReloadInterval());
+    return registry;
+  }
+}
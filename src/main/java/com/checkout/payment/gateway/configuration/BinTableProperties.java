@@ -0,0 +1,16 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.bin-table")
+public class BinTableProperties {
+
+  private boolean enabled = true;
+  private String location = "classpath:bin-ranges.csv";
+  private Duration reloadInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,34 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.throttling.CardVelocityLimiter;
+import java.security.SecureRandom;
+import java.util.Base64;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(CardVelocityProperties.class)
+public class CardVelocityConfiguration {
+
+  @Bean
+  public CardVelocityLimiter cardVelocityLimiter(CardVelocityProperties properties) {
+    byte[] hashKey;
+    if (properties.getHashKey().isEmpty()) {
+      // the counters are per instance, so is the key
+      hashKey = new byte[32];
+      new SecureRandom().nextBytes(hashKey);
+    } else {
+      hashKey = Base64.getDecoder().decode(properties.getHashKey());
+    }
+    return new CardVelocityLimiter(
+        hashKey,
+        properties.getMaxAttemptsPerCard(),
+        properties.getMaxFailuresPerBin(),
+        properties.getWindow(),
+        properties.getBuckets(),
+        properties.getCardSketchWidth(),
+        properties.getBinSketchWidth(),
+        System::currentTimeMillis);
+  }
+}
@@ -0,0 +1,25 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.velocity")
+public class CardVelocityProperties {
+
+  private int maxAttemptsPerCard = 5;
+  // declined attempts, and cards going over their limit, per merchant and BIN
+  private int maxFailuresPerBin = 1000;
+  private Duration window = Duration.ofMinutes(10);
+  private int buckets = 10;
+  // counters per sketch row (4 rows per bucket); should be a few times the distinct cards
+  // expected in a window, otherwise cards sharing counters get rejected before their limit
+  private int cardSketchWidth = 65536;
+  // likewise for the distinct BINs seen in a window, of which there are tens of thousands
+  private int binSketchWidth = 65536;
+  // base64 HMAC key for card numbers, a random one per instance when empty
+  private String hashKey = "";
+}
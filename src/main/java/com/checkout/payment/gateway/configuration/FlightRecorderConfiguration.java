@@ -0,0 +1,61 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.profiling.AcquirerCallEvent;
+import com.checkout.payment.gateway.profiling.FlightRecordingEndpoint;
+import com.checkout.payment.gateway.profiling.PaymentLookupEvent;
+import com.checkout.payment.gateway.profiling.PaymentProcessedEvent;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.List;
+import jdk.jfr.Recording;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "profiling.jfr.enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(FlightRecorderProperties.class)
+public class FlightRecorderConfiguration {
+
+  // JVMInformation has the JVM and program arguments, e.g. -Dspring.datasource.password=...,
+  // and SystemProcess the command line of every process on the host, this one included
+  static final List<String> SENSITIVE_EVENTS = List.of(
+      "jdk.InitialEnvironmentVariable",
+      "jdk.InitialSystemProperty",
+      "jdk.JVMInformation",
+      "jdk.SystemProcess");
+
+  /**
+   * Always-on recording with the JDK's low overhead settings, plus the payment events that took
+   * longer than their threshold. Old data is dropped past {@code max-age} or {@code max-size}.
+   * The events holding the environment, system properties and command lines are left out, as
+   * they hold credentials ({@link #SENSITIVE_EVENTS}).
+   */
+  @Bean(destroyMethod = "close")
+  public Recording paymentGatewayRecording(FlightRecorderProperties properties)
+      throws IOException, ParseException {
+    Recording recording = new Recording(
+        jdk.jfr.Configuration.getConfiguration(properties.getSettings()));
+    recording.setName("payment-gateway");
+    for (String event : SENSITIVE_EVENTS) {
+      recording.disable(event);
+    }
+    recording.enable(PaymentProcessedEvent.class)
+        .withThreshold(properties.getPaymentThreshold());
+    recording.enable(AcquirerCallEvent.class)
+        .withThreshold(properties.getAcquirerThreshold());
+    recording.enable(PaymentLookupEvent.class)
+        .withThreshold(properties.getLookupThreshold());
+    recording.setToDisk(true);
+    recording.setMaxAge(properties.getMaxAge());
+    recording.setMaxSize(properties.getMaxSize().toBytes());
+    recording.start();
+    return recording;
+  }
+
+  @Bean
+  public FlightRecordingEndpoint flightRecordingEndpoint(Recording paymentGatewayRecording) {
+    return new FlightRecordingEndpoint(paymentGatewayRecording);
+  }
+}
@@ -0,0 +1,22 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "profiling.jfr")
+public class FlightRecorderProperties {
+
+  private boolean enabled = true;
+  // JDK event settings the recording starts from, "default" or "profile"
+  private String settings = "default";
+  private Duration maxAge = Duration.ofHours(6);
+  private DataSize maxSize = DataSize.ofMegabytes(100);
+  private Duration paymentThreshold = Duration.ofMillis(200);
+  private Duration acquirerThreshold = Duration.ofMillis(500);
+  private Duration lookupThreshold = Duration.ofMillis(20);
+}
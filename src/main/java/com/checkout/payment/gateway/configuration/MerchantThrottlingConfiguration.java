@@ -0,0 +1,35 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.checkout.payment.gateway.throttling.FairPaymentScheduler;
+import com.checkout.payment.gateway.throttling.MerchantRateLimiter;
+import java.util.Map;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(MerchantThrottlingProperties.class)
+public class MerchantThrottlingConfiguration {
+
+  @Bean(destroyMethod = "close")
+  public MerchantRateLimiter merchantRateLimiter(MerchantThrottlingProperties properties) {
+    MerchantRateLimiter limiter = new MerchantRateLimiter(
+        properties.getRatePerSecond(),
+        properties.getBurst(),
+        properties.getMaxTrackedMerchants(),
+        MerchantIds.ofApiKeys(properties.getApiKeys()),
+        System::nanoTime);
+    limiter.startEviction(properties.getEvictionInterval());
+    return limiter;
+  }
+
+  @Bean
+  public FairPaymentScheduler fairPaymentScheduler(MerchantThrottlingProperties properties) {
+    Map<String, Double> weights = MerchantIds.byMerchant(properties.getWeights());
+    return new FairPaymentScheduler(
+        properties.getMaxConcurrentPayments(),
+        properties.getMaxQueueWait().toMillis(),
+        merchant -> weights.getOrDefault(merchant, 1.0));
+  }
+}
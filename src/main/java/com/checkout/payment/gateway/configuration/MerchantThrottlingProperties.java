@@ -0,0 +1,27 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "merchants.throttling")
+public class MerchantThrottlingProperties {
+
+  private double ratePerSecond = 50;
+  private int burst = 100;
+  private int maxTrackedMerchants = 100_000;
+  // api keys of the merchants; when set, any other key shares a single bucket
+  private Set<String> apiKeys = new HashSet<>();
+  private Duration evictionInterval = Duration.ofSeconds(10);
+  private int maxConcurrentPayments = 64;
+  private Duration maxQueueWait = Duration.ofSeconds(2);
+  // merchant api key -> share of the payment slots, 1 when not listed
+  private Map<String, Double> weights = new HashMap<>();
+}
@@ -0,0 +1,24 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
+import com.checkout.payment.gateway.repository.impl.FilePaymentIntentLog;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PaymentIntentLogProperties.class)
+public class PaymentIntentLogConfiguration {
+
+  @Bean
+  public PaymentIntentLog paymentIntentLog(PaymentIntentLogProperties properties)
+      throws IOException {
+    if (!properties.isEnabled()) {
+      return PaymentIntentLog.noOp();
+    }
+    return new FilePaymentIntentLog(Path.of(properties.getFile()),
+        properties.getMaxSize().toBytes());
+  }
+}
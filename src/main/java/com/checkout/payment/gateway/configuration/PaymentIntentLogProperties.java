@@ -0,0 +1,17 @@
+package com.checkout.payment.gateway.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.intent-log")
+public class PaymentIntentLogProperties {
+
+  private boolean enabled;
+  private String file = "data/payment-intents.log";
+  private DataSize maxSize = DataSize.ofMegabytes(16);
+  private int recoveryThreads = 8;
+}
@@ -0,0 +1,65 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.repository.replica.ReadYourWrites;
+import com.checkout.payment.gateway.repository.replica.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Splits {@code spring.datasource} into a primary pool for writes and a replica pool for
+ * read-only transactions. The pools are beans of their own, so both are closed on shutdown and
+ * reported by the health endpoint, while JPA and the webhook outbox use the routing datasource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "payments.storage.replica.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaConfiguration {
+
+  @Bean
+  public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+    HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .build();
+    primary.setPoolName("payments-primary");
+    return primary;
+  }
+
+  @Bean
+  public HikariDataSource replicaDataSource(ReadReplicaProperties properties) {
+    HikariConfig config = new HikariConfig();
+    config.setPoolName("payments-replica");
+    config.setJdbcUrl(properties.getUrl());
+    config.setUsername(properties.getUsername());
+    config.setPassword(properties.getPassword());
+    config.setMaximumPoolSize(properties.getMaximumPoolSize());
+    HikariDataSource replica = new HikariDataSource(config);
+
+    if (properties.isInitializeSchema()) {
+      new ResourceDatabasePopulator(new ClassPathResource("init.sql")).execute(replica);
+    }
+    return replica;
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(HikariDataSource primaryDataSource,
+      HikariDataSource replicaDataSource) {
+    return new LazyConnectionDataSourceProxy(
+        new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource));
+  }
+
+  @Bean
+  public ReadYourWrites readYourWrites(ReadReplicaProperties properties) {
+    return new ReadYourWrites(properties.getReadYourWritesWindow(), System::currentTimeMillis);
+  }
+}
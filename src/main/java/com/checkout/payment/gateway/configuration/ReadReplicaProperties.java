@@ -0,0 +1,21 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.storage.replica")
+public class ReadReplicaProperties {
+
+  private boolean enabled = false;
+  private String url;
+  private String username;
+  private String password;
+  private int maximumPoolSize = 10;
+  private boolean initializeSchema = false;
+  // how far the replica can be behind the primary; newer payments are read from the primary
+  private Duration readYourWritesWindow = Duration.ofSeconds(5);
+}
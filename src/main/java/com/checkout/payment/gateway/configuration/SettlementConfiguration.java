@@ -0,0 +1,39 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.settlement.SettlementJob;
+import com.checkout.payment.gateway.settlement.SettlementLedger;
+import java.nio.file.Path;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@ConditionalOnProperty(name = "payments.settlement.enabled", havingValue = "true")
+@EnableConfigurationProperties(SettlementProperties.class)
+public class SettlementConfiguration {
+
+  @Bean
+  public SettlementLedger settlementLedger(JdbcTemplate jdbcTemplate) {
+    return new SettlementLedger(jdbcTemplate);
+  }
+
+  /**
+   * A settlement window is read as a range of payment ids, which only works for time-ordered
+   * ids.
+   */
+  @Bean(destroyMethod = "close")
+  @ConditionalOnProperty(name = "payment.id.generator", havingValue = "time-ordered",
+      matchIfMissing = true)
+  public SettlementJob settlementJob(PaymentsRepository repo, SettlementLedger ledger,
+      SettlementProperties properties) {
+    SettlementJob job = new SettlementJob(repo, ledger, properties.getLease(),
+        Path.of(properties.getDirectory()), properties.getParallelism(),
+        properties.getChunkSize());
+    job.startDaily(properties.getCutOff(), properties.getZone(), properties.getGrace(),
+        properties.getCatchUpDays());
+    return job;
+  }
+}
@@ -0,0 +1,29 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.settlement")
+public class SettlementProperties {
+
+  private boolean enabled;
+  private String directory = "data/settlement";
+  // the day before each cut-off is settled
+  private LocalTime cutOff = LocalTime.MIDNIGHT;
+  private ZoneId zone = ZoneOffset.UTC;
+  // longer than the longest payment, so payments started before the cut-off are saved
+  private Duration grace = Duration.ofMinutes(5);
+  // days back that are settled if no instance settled them, e.g. as none was running
+  private int catchUpDays = 3;
+  // how long a window is left to the instance settling it before another may take it over
+  private Duration lease = Duration.ofHours(1);
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int chunkSize = 16384;
+}
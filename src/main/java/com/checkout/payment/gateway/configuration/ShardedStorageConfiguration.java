@@ -0,0 +1,41 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.repository.impl.ShardedPaymentsRepository;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+@Configuration
+@ConditionalOnProperty(name = "payments.storage.mode", havingValue = "sharded")
+@EnableConfigurationProperties(ShardedStorageProperties.class)
+public class ShardedStorageConfiguration {
+
+  @Bean
+  public ShardedPaymentsRepository shardedPaymentsRepository(ShardedStorageProperties properties) {
+    List<HikariDataSource> pools = new ArrayList<>();
+    for (int i = 0; i < properties.getShards().size(); i++) {
+      ShardedStorageProperties.Shard shard = properties.getShards().get(i);
+
+      HikariConfig config = new HikariConfig();
+      config.setPoolName("payments-shard-" + i);
+      config.setJdbcUrl(shard.getUrl());
+      config.setUsername(shard.getUsername());
+      config.setPassword(shard.getPassword());
+      config.setMaximumPoolSize(shard.getMaximumPoolSize());
+      HikariDataSource pool = new HikariDataSource(config);
+
+      if (properties.isInitializeSchema()) {
+        new ResourceDatabasePopulator(new ClassPathResource("init.sql")).execute(pool);
+      }
+      pools.add(pool);
+    }
+    return new ShardedPaymentsRepository(pools);
+  }
+}
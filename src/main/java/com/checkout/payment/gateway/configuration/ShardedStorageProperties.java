@@ -0,0 +1,25 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.storage.sharded")
+public class ShardedStorageProperties {
+
+  private List<Shard> shards = new ArrayList<>();
+  private boolean initializeSchema = true;
+
+  @Getter
+  @Setter
+  public static class Shard {
+    private String url;
+    private String username;
+    private String password;
+    private int maximumPoolSize = 10;
+  }
+}
@@ -0,0 +1,47 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.controller.PaymentGatewayController;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
+import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentIdGenerator;
+import com.checkout.payment.gateway.settlement.SettlementJob;
+import com.checkout.payment.gateway.shutdown.PaymentDrain;
+import com.checkout.payment.gateway.throttling.FairPaymentScheduler;
+import com.checkout.payment.gateway.throttling.MerchantRateLimiter;
+import com.checkout.payment.gateway.validation.PaymentRequestValidator;
+import com.checkout.payment.gateway.warmup.PaymentPathWarmUp;
+import com.checkout.payment.gateway.webhook.WebhookDispatcher;
+import jdk.jfr.Recording;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class StartupConfiguration {
+
+  /**
+   * Beans on the payment path stay eagerly initialized when {@code spring.main.lazy-initialization}
+   * is on, so the cost is paid before the instance is ready rather than by the first request.
+   */
+  @Bean
+  public static LazyInitializationExcludeFilter paymentPathBeans() {
+    return LazyInitializationExcludeFilter.forBeanTypes(
+        PaymentGatewayController.class,
+        PaymentGatewayService.class,
+        PaymentRequestValidator.class,
+        PaymentIdGenerator.class,
+        BankClient.class,
+        PaymentsRepository.class,
+        PaymentIdFilter.class,
+        MerchantRateLimiter.class,
+        FairPaymentScheduler.class,
+        // not used by any other bean, so they would never be started
+        WebhookDispatcher.class,
+        SettlementJob.class,
+        PaymentDrain.class,
+        PaymentPathWarmUp.class,
+        Recording.class);
+  }
+}
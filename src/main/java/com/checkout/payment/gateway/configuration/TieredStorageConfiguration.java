@@ -0,0 +1,27 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.repository.impl.TieredPaymentsRepository;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(name = "payments.storage.mode", havingValue = "tiered")
+@EnableConfigurationProperties(TieredStorageProperties.class)
+public class TieredStorageConfiguration {
+
+  @Bean
+  public TieredPaymentsRepository tieredPaymentsRepository(TieredStorageProperties properties)
+      throws IOException {
+    TieredPaymentsRepository repository = new TieredPaymentsRepository(
+        Path.of(properties.getDirectory()),
+        properties.getHotRetention(),
+        properties.getMaxColdSegments(),
+        System::currentTimeMillis);
+    repository.startMaintenance(properties.getMigrationInterval());
+    return repository;
+  }
+}
@@ -0,0 +1,17 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "payments.storage.tiered")
+public class TieredStorageProperties {
+
+  private String directory = "data/payments";
+  private Duration hotRetention = Duration.ofHours(6);
+  private Duration migrationInterval = Duration.ofMinutes(5);
+  private int maxColdSegments = 8;
+}
@@ -0,0 +1,25 @@
+package com.checkout.payment.gateway.configuration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+/**
+ * Exits as soon as the application is ready when {@code startup.training-run} is set, so a
+ * run with {@code -XX:ArchiveClassesAtExit} dumps the classes loaded during startup to a CDS
+ * archive. Registered on the {@link SpringApplication} rather than as a bean, so it is not
+ * subject to bean conditions that AOT processing fixes at build time.
+ */
+@Slf4j
+public class TrainingRunListener implements ApplicationListener<ApplicationReadyEvent> {
+
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    if (event.getApplicationContext().getEnvironment()
+        .getProperty("startup.training-run", Boolean.class, false)) {
+      log.info("Training run finished, exiting");
+      System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+  }
+}
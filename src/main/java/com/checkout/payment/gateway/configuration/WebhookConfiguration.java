@@ -0,0 +1,47 @@
+package com.checkout.payment.gateway.configuration;
+
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.checkout.payment.gateway.webhook.OutboxWebhookPublisher;
+import com.checkout.payment.gateway.webhook.WebhookDispatcher;
+import com.checkout.payment.gateway.webhook.WebhookOutbox;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+@EnableConfigurationProperties(WebhookProperties.class)
+public class WebhookConfiguration {
+
+  @Bean
+  @ConditionalOnProperty(name = "webhooks.enabled", havingValue = "true")
+  public WebhookOutbox webhookOutbox(JdbcTemplate jdbcTemplate) {
+    return new WebhookOutbox(jdbcTemplate);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "webhooks.enabled", havingValue = "true")
+  public WebhookDispatcher webhookDispatcher(WebhookOutbox outbox, WebClient.Builder builder,
+      WebhookProperties properties) {
+    WebhookDispatcher dispatcher = new WebhookDispatcher(outbox, builder, properties,
+        System::currentTimeMillis);
+    dispatcher.start(properties.getPollInterval());
+    return dispatcher;
+  }
+
+  @Bean
+  public WebhookPublisher webhookPublisher(ObjectProvider<WebhookOutbox> outbox,
+      WebhookProperties properties, ObjectMapper objectMapper) {
+    WebhookOutbox available = outbox.getIfAvailable();
+    if (available == null) {
+      return WebhookPublisher.noOp();
+    }
+    return new OutboxWebhookPublisher(available, MerchantIds.byMerchant(properties.getEndpoints()),
+        objectMapper, System::currentTimeMillis);
+  }
+}
@@ -0,0 +1,26 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "webhooks")
+public class WebhookProperties {
+
+  private boolean enabled;
+  // merchant api key -> URL its payment events are posted to
+  private Map<String, String> endpoints = new HashMap<>();
+  private Duration pollInterval = Duration.ofMillis(200);
+  private int batchSize = 50;
+  private int maxEventsPerPoll = 1000;
+  private int maxConcurrentPerMerchant = 2;
+  private int maxAttempts = 12;
+  private Duration initialBackoff = Duration.ofSeconds(1);
+  private Duration maxBackoff = Duration.ofMinutes(10);
+  private Duration requestTimeout = Duration.ofSeconds(10);
+}
@@ -1,15 +1,28 @@
 package com.checkout.payment.gateway.controller;
 
+import com.checkout.payment.gateway.cache.SerializedPayment;
+import com.checkout.payment.gateway.exception.InvalidRequestException;
+import com.checkout.payment.gateway.exception.RateLimitExceededException;
 import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
+import com.checkout.payment.gateway.service.Deadline;
+import com.checkout.payment.gateway.service.MerchantIds;
 import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.throttling.FairPaymentScheduler;
+import com.checkout.payment.gateway.throttling.MerchantRateLimiter;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -18,20 +31,83 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/payments")
 public class PaymentGatewayController {
 
+  public static final String API_KEY_HEADER = "X-Api-Key";
+  // how long the client is willing to wait, in milliseconds
+  public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
   private final PaymentGatewayService paymentGatewayService;
+  private final MerchantRateLimiter rateLimiter;
+  private final FairPaymentScheduler scheduler;
+  private final Duration defaultTimeout;
+  private final Duration minTimeout;
+  private final Duration maxTimeout;
 
-  public PaymentGatewayController(PaymentGatewayService paymentGatewayService) {
+  public PaymentGatewayController(PaymentGatewayService paymentGatewayService,
+      MerchantRateLimiter rateLimiter, FairPaymentScheduler scheduler,
+      @Value("${payments.deadline.default-timeout:10s}") Duration defaultTimeout,
+      @Value("${payments.deadline.min-timeout:2s}") Duration minTimeout,
+      @Value("${payments.deadline.max-timeout:30s}") Duration maxTimeout) {
     this.paymentGatewayService = paymentGatewayService;
+    this.rateLimiter = rateLimiter;
+    this.scheduler = scheduler;
+    this.defaultTimeout = defaultTimeout;
+    this.minTimeout = minTimeout;
+    this.maxTimeout = maxTimeout;
   }
 
   @PostMapping
   @ResponseStatus(HttpStatus.OK)
-  public PaymentResponse process(@Valid @RequestBody PaymentRequest request) {
-    return paymentGatewayService.processPayment(request);
+  public PaymentResponse process(
+      @RequestHeader(value = API_KEY_HEADER, required = false) String apiKey,
+      @RequestHeader(value = TIMEOUT_HEADER, required = false) String timeoutMillis,
+      @Valid @RequestBody PaymentRequest request) {
+    Deadline deadline = Deadline.after(timeout(timeoutMillis));
+    // the key is a credential, so only the id derived from it is passed on
+    String merchant = MerchantIds.fromApiKey(apiKey);
+
+    long waitNanos = rateLimiter.tryAcquire(merchant);
+    if (waitNanos > 0) {
+      throw new RateLimitExceededException("Rate limit exceeded",
+          TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+    // time spent queued for a slot must not eat into the acquirer's minimum
+    return scheduler.run(merchant, () -> paymentGatewayService.processPayment(merchant, request,
+        deadline.atLeast(minTimeout)));
+  }
+
+  /**
+   * A charge that outlives its deadline at the acquirer is saved as pending, so a deadline too
+   * short for one acquirer round trip would only turn payments pending. It is raised to
+   * {@code min-timeout} instead, counted again from when the payment is admitted.
+   */
+  private Duration timeout(String header) {
+    if (header == null) {
+      return defaultTimeout;
+    }
+    long timeoutMillis;
+    try {
+      timeoutMillis = Long.parseLong(header.trim());
+    } catch (NumberFormatException e) {
+      timeoutMillis = 0;
+    }
+    if (timeoutMillis <= 0) {
+      throw new InvalidRequestException(
+          TIMEOUT_HEADER + " must be a positive number of milliseconds");
+    }
+    return Duration.ofMillis(Math.max(minTimeout.toMillis(),
+        Math.min(timeoutMillis, maxTimeout.toMillis())));
   }
 
+  /**
+   * Writes the cached JSON as is. A poll with a matching {@code If-None-Match} gets a 304, which
+   * Spring answers from the ETag of the returned entity.
+   */
   @GetMapping("/{id}")
-  public PaymentResponse get(@PathVariable UUID id) {
-    return paymentGatewayService.getPaymentById(id);
+  public ResponseEntity<byte[]> get(@PathVariable UUID id) {
+    SerializedPayment payment = paymentGatewayService.getSerializedPaymentById(id);
+    return ResponseEntity.ok()
+        .eTag(payment.etag())
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(payment.json());
   }
 }
@@ -46,6 +46,48 @@ public class CommonExceptionHandler {
         .body(error);
   }
 
+  @ExceptionHandler(DeadlineExceededException.class)
+  public ResponseEntity<Object> handleDeadlineExceeded(DeadlineExceededException ex) {
+    ApiError error = new ApiError(
+        "DEADLINE_EXCEEDED",
+        ex.getMessage(),
+        List.of()
+    );
+
+    return ResponseEntity
+        .status(HttpStatus.GATEWAY_TIMEOUT)
+        .body(error);
+  }
+
+  @ExceptionHandler(RateLimitExceededException.class)
+  public ResponseEntity<Object> handleRateLimitExceeded(RateLimitExceededException ex) {
+    ApiError error = new ApiError(
+        "RATE_LIMITED",
+        ex.getMessage(),
+        List.of()
+    );
+
+    long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000);
+    return ResponseEntity
+        .status(HttpStatus.TOO_MANY_REQUESTS)
+        .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds))
+        .body(error);
+  }
+
+  @ExceptionHandler(ShuttingDownException.class)
+  public ResponseEntity<Object> handleShuttingDown(ShuttingDownException ex) {
+    ApiError error = new ApiError(
+        "SHUTTING_DOWN",
+        ex.getMessage(),
+        List.of()
+    );
+
+    return ResponseEntity
+        .status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "1")
+        .body(error);
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<Object> handleGeneric() {
     ApiError error = new ApiError(
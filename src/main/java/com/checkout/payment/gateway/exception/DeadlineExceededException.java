@@ -0,0 +1,8 @@
+package com.checkout.payment.gateway.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+  public DeadlineExceededException(String message) {
+    // expected whenever a client gives up, so the stack trace isn't worth its cost
+    super(message, null, false, false);
+  }
+}
@@ -2,4 +2,8 @@ package com.checkout.payment.gateway.exception;
 
 public class NotFoundException extends RuntimeException {
   public NotFoundException(String message) { super(message); }
+
+  public NotFoundException(String message, boolean writableStackTrace) {
+    super(message, null, false, writableStackTrace);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.checkout.payment.gateway.exception;
+
+import lombok.Getter;
+
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+  private final long retryAfterMillis;
+
+  public RateLimitExceededException(String message, long retryAfterMillis) {
+    super(message, null, false, false);
+    this.retryAfterMillis = retryAfterMillis;
+  }
+}
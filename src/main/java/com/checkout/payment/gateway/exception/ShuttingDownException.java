@@ -0,0 +1,11 @@
+package com.checkout.payment.gateway.exception;
+
+/**
+ * The instance is draining and takes no new payments. Nothing was sent to the acquirer, so the
+ * client can safely retry against another instance.
+ */
+public class ShuttingDownException extends RuntimeException {
+  public ShuttingDownException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -5,7 +5,9 @@ import com.fasterxml.jackson.annotation.JsonValue;
 public enum PaymentStatus {
   AUTHORIZED("Authorized"),
   DECLINED("Declined"),
-  REJECTED("Rejected");
+  REJECTED("Rejected"),
+  // sent to the acquirer, but the outcome is unknown until it is reconciled with the acquirer
+  PENDING("Pending");
 
   private final String name;
 
@@ -0,0 +1,33 @@
+package com.checkout.payment.gateway.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+@Name("com.checkout.payment.AcquirerCall")
+@Label("Acquirer Call")
+@Description("A charge at the acquirer that took longer than the threshold, including retries")
+@Category({"Payment Gateway", "Acquirer"})
+@StackTrace(false)
+@Threshold("500 ms")
+@Setter
+public class AcquirerCallEvent extends jdk.jfr.Event {
+
+  @Label("Scheme")
+  private String scheme;
+
+  @Label("Attempts")
+  private int attempts;
+
+  @Label("HTTP Status")
+  @Description("Status of the last response, 0 if there was none")
+  private int statusCode;
+
+  @Label("Outcome")
+  @Description("Authorized, Declined, or the exception the call failed with")
+  private String outcome;
+}
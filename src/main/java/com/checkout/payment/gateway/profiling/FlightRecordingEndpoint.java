@@ -0,0 +1,40 @@
+package com.checkout.payment.gateway.profiling;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * {@code GET /actuator/flightrecording} downloads what the always-on recording holds so far, as a
+ * {@code .jfr} file for JDK Mission Control or {@code jfr print}.
+ */
+@Endpoint(id = "flightrecording")
+@Slf4j
+public class FlightRecordingEndpoint {
+
+  private final Recording recording;
+  // only the latest dump is kept, older ones are deleted once a new one is taken
+  private Path lastDump;
+
+  public FlightRecordingEndpoint(Recording recording) {
+    this.recording = recording;
+  }
+
+  @ReadOperation
+  public synchronized Resource dump() throws IOException {
+    Path file = Files.createTempFile("payment-gateway-", ".jfr");
+    recording.dump(file);
+    if (lastDump != null) {
+      Files.deleteIfExists(lastDump);
+    }
+    lastDump = file;
+    log.info("Dumped flight recording to {} ({} bytes)", file, Files.size(file));
+    return new FileSystemResource(file);
+  }
+}
@@ -0,0 +1,32 @@
+package com.checkout.payment.gateway.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import lombok.Setter;
+
+@Name("com.checkout.payment.PaymentLookup")
+@Label("Payment Lookup")
+@Description("A payment lookup by id that took longer than the threshold")
+@Category({"Payment Gateway", "Payments"})
+@StackTrace(false)
+@Threshold("20 ms")
+@Setter
+public class PaymentLookupEvent extends jdk.jfr.Event {
+
+  public static final String SOURCE_ID_FILTER = "Id Filter";
+  public static final String SOURCE_REPOSITORY = "Repository";
+
+  @Label("Payment Id")
+  private String paymentId;
+
+  @Label("Source")
+  @Description("Where the lookup was answered")
+  private String source;
+
+  @Label("Found")
+  private boolean found;
+}
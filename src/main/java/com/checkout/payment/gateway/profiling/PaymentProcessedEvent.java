@@ -0,0 +1,47 @@
+package com.checkout.payment.gateway.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import lombok.Setter;
+
+@Name("com.checkout.payment.PaymentProcessed")
+@Label("Payment Processed")
+@Description("A payment that took longer than the threshold, with the time spent in each step")
+@Category({"Payment Gateway", "Payments"})
+@StackTrace(false)
+@Threshold("200 ms")
+@Setter
+public class PaymentProcessedEvent extends jdk.jfr.Event {
+
+  @Label("Payment Id")
+  private String paymentId;
+
+  @Label("Merchant")
+  @Description("Merchant id, the start of the SHA-256 of the merchant's api key")
+  private String merchant;
+
+  @Label("Status")
+  @Description("Payment status, or the exception the payment failed with")
+  private String status;
+
+  @Label("Validation")
+  @Timespan(Timespan.NANOSECONDS)
+  private long validationDuration;
+
+  @Label("Intent Log")
+  @Timespan(Timespan.NANOSECONDS)
+  private long intentLogDuration;
+
+  @Label("Acquirer Call")
+  @Timespan(Timespan.NANOSECONDS)
+  private long acquirerDuration;
+
+  @Label("Persistence")
+  @Timespan(Timespan.NANOSECONDS)
+  private long persistenceDuration;
+}
@@ -0,0 +1,45 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable record of payments that have been sent to the acquirer but whose outcome has not been
+ * saved yet, so they are not lost if the gateway stops in between.
+ */
+public interface PaymentIntentLog {
+
+  /**
+   * Records the intent to charge, returning once it is durable.
+   */
+  void begin(Payment pending);
+
+  /**
+   * Marks the intent as finished once the outcome is saved. This does not wait for the disk, an
+   * intent completed again by recovery is harmless.
+   */
+  void complete(UUID id);
+
+  /**
+   * @return intents that were begun but not completed before the last shutdown
+   */
+  List<Payment> unfinished();
+
+  static PaymentIntentLog noOp() {
+    return new PaymentIntentLog() {
+      @Override
+      public void begin(Payment pending) {
+      }
+
+      @Override
+      public void complete(UUID id) {
+      }
+
+      @Override
+      public List<Payment> unfinished() {
+        return List.of();
+      }
+    };
+  }
+}
@@ -0,0 +1,48 @@
+package com.checkout.payment.gateway.repository;
+
+import java.util.UUID;
+import java.util.stream.Stream;
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PaymentsJpaRepository extends JpaRepository<Payment, UUID> {
+
+  @Query("select p.id from Payment p")
+  Stream<UUID> streamAllIds();
+
+  // constructed, not managed, so streaming millions of payments doesn't fill the persistence context
+  @Query("""
+      select new com.checkout.payment.gateway.model.domain.Payment(p.id, p.status,
+          p.cardNumberLastFour, p.expiryMonth, p.expiryYear, p.currency, p.amount)
+      from Payment p
+      where p.status = :status and p.id >= :fromId and p.id < :toId""")
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+  Stream<Payment> streamInIdRange(@Param("status") PaymentStatus status,
+      @Param("fromId") UUID fromId, @Param("toId") UUID toId);
+
+  @Query("""
+      select new com.checkout.payment.gateway.model.domain.Payment(p.id, p.status,
+          p.cardNumberLastFour, p.expiryMonth, p.expiryYear, p.currency, p.amount)
+      from Payment p
+      where p.status = :status""")
+  @QueryHints({
+      @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+      @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+  Stream<Payment> streamWithStatus(@Param("status") PaymentStatus status);
+
+  @Modifying
+  @Query("update Payment p set p.status = :to where p.id = :id and p.status = :from")
+  int updateStatus(@Param("id") UUID id, @Param("from") PaymentStatus from,
+      @Param("to") PaymentStatus to);
+}
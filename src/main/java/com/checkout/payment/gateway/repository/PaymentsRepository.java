@@ -1,10 +1,53 @@
 package com.checkout.payment.gateway.repository;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 import com.checkout.payment.gateway.model.domain.Payment;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
 
-@Repository
-public interface PaymentsRepository extends JpaRepository<Payment, UUID> {
-}
\ No newline at end of file
+/**
+ * Storage for processed payments. The implementation is chosen with `payments.storage.mode`.
+ */
+public interface PaymentsRepository {
+
+  Payment save(Payment payment);
+
+  Optional<Payment> findById(UUID id);
+
+  List<Payment> findAll();
+
+  /**
+   * Streams the ids of all stored payments without loading the payments themselves.
+   */
+  void forEachId(Consumer<UUID> action);
+
+  /**
+   * Same as {@link #forEachId}, with the scan split over up to {@code parallelism} threads, so
+   * the action must be thread safe.
+   */
+  default void forEachIdParallel(int parallelism, Consumer<UUID> action) {
+    forEachId(action);
+  }
+
+  /**
+   * Streams the payments with the given status and an id from {@code fromId} (inclusive) to
+   * {@code toId} (exclusive), without loading them all at once. With time-ordered ids this is
+   * the payments of a time window.
+   */
+  void forEachInIdRange(PaymentStatus status, UUID fromId, UUID toId, Consumer<Payment> action);
+
+  /**
+   * Streams all payments with the given status. This is a full scan, meant for the few
+   * {@code PENDING} payments waiting for reconciliation.
+   */
+  void forEachWithStatus(PaymentStatus status, Consumer<Payment> action);
+
+  /**
+   * Records the outcome of a {@code PENDING} payment once it is known from the acquirer.
+   *
+   * @return false if there is no such payment or it is not pending any more
+   */
+  boolean resolvePending(UUID id, PaymentStatus outcome);
+}
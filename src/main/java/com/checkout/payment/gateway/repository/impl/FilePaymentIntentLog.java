@@ -0,0 +1,266 @@
+package com.checkout.payment.gateway.repository.impl;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
+import com.checkout.payment.gateway.repository.tiered.PaymentRecordCodec;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only file of payment intents. Records from concurrent payments are written and forced
+ * to disk together by a single writer thread (group commit), so a payment waits for at most one
+ * sequential write and fsync, shared with the others in flight. Once the file grows past its
+ * limit it is rewritten with only the intents that are still open.
+ *
+ * <p>Every record is framed with its length and a CRC, so a record torn by a crash ends the
+ * replay instead of being misread.
+ */
+@Slf4j
+public class FilePaymentIntentLog implements PaymentIntentLog, Closeable {
+
+  private static final byte BEGIN = 1;
+  private static final byte COMPLETE = 2;
+  private static final int MAX_BATCH = 1024;
+  private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+  private record Append(byte[] record, CompletableFuture<Void> durable) {
+  }
+
+  private final Path file;
+  private final long maxBytes;
+  private final Map<UUID, Payment> open = new ConcurrentHashMap<>();
+  private final List<Payment> unfinished;
+  private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+  private final Thread writer;
+  // only used by the writer thread once the constructor has finished
+  private FileChannel channel;
+  private boolean closed;
+
+  public FilePaymentIntentLog(Path file, long maxBytes) throws IOException {
+    this.file = file;
+    this.maxBytes = maxBytes;
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    replay();
+    this.unfinished = List.copyOf(open.values());
+    rewrite();
+
+    this.writer = new Thread(this::writeLoop, "payment-intent-log-writer");
+    writer.setDaemon(true);
+    writer.start();
+    log.info("Opened payment intent log {} with {} unfinished intents", file, unfinished.size());
+  }
+
+  @Override
+  public void begin(Payment pending) {
+    open.put(pending.getId(), pending);
+    CompletableFuture<Void> durable = new CompletableFuture<>();
+    enqueue(new Append(beginRecord(pending), durable));
+    try {
+      durable.join();
+    } catch (CompletionException e) {
+      open.remove(pending.getId());
+      throw new UncheckedIOException("Failed to log intent for payment " + pending.getId(),
+          e.getCause() instanceof IOException io ? io : new IOException(e.getCause()));
+    }
+  }
+
+  @Override
+  public void complete(UUID id) {
+    if (open.remove(id) != null) {
+      enqueue(new Append(completeRecord(id), null));
+    }
+  }
+
+  @Override
+  public List<Payment> unfinished() {
+    return unfinished;
+  }
+
+  public int openIntents() {
+    return open.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  private synchronized void enqueue(Append append) {
+    if (closed) {
+      throw new IllegalStateException("Payment intent log is closed");
+    }
+    queue.add(append);
+  }
+
+  private void writeLoop() {
+    List<Append> batch = new ArrayList<>(MAX_BATCH);
+    while (true) {
+      Append first;
+      try {
+        first = queue.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        first = null;
+      }
+      if (first == null) {
+        synchronized (this) {
+          if (closed && queue.isEmpty()) {
+            return;
+          }
+        }
+        continue;
+      }
+      batch.add(first);
+      queue.drainTo(batch, MAX_BATCH - 1);
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private void writeBatch(List<Append> batch) {
+    try {
+      ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = ByteBuffer.wrap(batch.get(i).record());
+      }
+      writeFully(channel, buffers);
+      channel.force(false);
+    } catch (IOException e) {
+      log.error("Failed to write {} payment intent records", batch.size(), e);
+      batch.stream().filter(append -> append.durable() != null)
+          .forEach(append -> append.durable().completeExceptionally(e));
+      return;
+    }
+    batch.stream().filter(append -> append.durable() != null)
+        .forEach(append -> append.durable().complete(null));
+
+    try {
+      if (channel.size() > maxBytes) {
+        rewrite();
+      }
+    } catch (IOException e) {
+      log.error("Failed to rewrite payment intent log {}", file, e);
+    }
+  }
+
+  private void replay() throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      while (true) {
+        int length = in.readInt();
+        int crc = in.readInt();
+        if (length <= 0 || length > MAX_RECORD_BYTES) {
+          break;
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (crc32(payload) != crc) {
+          break;
+        }
+
+        DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+        if (record.readByte() == BEGIN) {
+          Payment pending = PaymentRecordCodec.read(record);
+          open.put(pending.getId(), pending);
+        } else {
+          open.remove(new UUID(record.readLong(), record.readLong()));
+        }
+      }
+    } catch (EOFException e) {
+      // end of the log, or a record torn by a crash that is dropped by the rewrite
+    }
+  }
+
+  private void rewrite() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      for (Payment pending : open.values()) {
+        writeFully(out, new ByteBuffer[] {ByteBuffer.wrap(beginRecord(pending))});
+      }
+      out.force(false);
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+    while (buffers[buffers.length - 1].hasRemaining()) {
+      channel.write(buffers);
+    }
+  }
+
+  private static byte[] beginRecord(Payment pending) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(BEGIN);
+      PaymentRecordCodec.write(out, pending);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return framed(bytes.toByteArray());
+  }
+
+  private static byte[] completeRecord(UUID id) {
+    return framed(ByteBuffer.allocate(1 + 2 * Long.BYTES)
+        .put(COMPLETE)
+        .putLong(id.getMostSignificantBits())
+        .putLong(id.getLeastSignificantBits())
+        .array());
+  }
+
+  private static byte[] framed(byte[] payload) {
+    return ByteBuffer.allocate(2 * Integer.BYTES + payload.length)
+        .putInt(payload.length)
+        .putInt(crc32(payload))
+        .put(payload)
+        .array();
+  }
+
+  private static int crc32(byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+}
@@ -0,0 +1,122 @@
+package com.checkout.payment.gateway.repository.impl;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsJpaRepository;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.replica.ReadYourWrites;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * With a read replica configured (see {@code ReadReplicaConfiguration}) read-only transactions,
+ * which includes the lookups and listings of {@link PaymentsJpaRepository}, go to the replica.
+ * Payments too recent to have reached it are read in a read-write transaction on the primary.
+ */
+@Repository
+@ConditionalOnProperty(name = "payments.storage.mode", havingValue = "jpa", matchIfMissing = true)
+public class JpaPaymentsRepository implements PaymentsRepository {
+
+  private final PaymentsJpaRepository jpa;
+  private final DataSource dataSource;
+  private final TransactionTemplate onPrimary;
+  // null without a replica
+  private final ReadYourWrites readYourWrites;
+
+  public JpaPaymentsRepository(PaymentsJpaRepository jpa, DataSource dataSource,
+      PlatformTransactionManager transactionManager,
+      ObjectProvider<ReadYourWrites> readYourWrites) {
+    this.jpa = jpa;
+    this.dataSource = dataSource;
+    this.onPrimary = new TransactionTemplate(transactionManager);
+    this.readYourWrites = readYourWrites.getIfAvailable();
+  }
+
+  @Override
+  public Payment save(Payment payment) {
+    Payment saved = jpa.save(payment);
+    if (readYourWrites != null) {
+      readYourWrites.written(saved.getId());
+    }
+    return saved;
+  }
+
+  @Override
+  public Optional<Payment> findById(UUID id) {
+    if (readYourWrites == null) {
+      return jpa.findById(id);
+    }
+    if (readYourWrites.isRecent(id)) {
+      return onPrimary.execute(status -> jpa.findById(id));
+    }
+    Optional<Payment> payment = jpa.findById(id);
+    // the replica can fall further behind than the window
+    return payment.isPresent() ? payment : onPrimary.execute(status -> jpa.findById(id));
+  }
+
+  @Override
+  public List<Payment> findAll() {
+    return jpa.findAll();
+  }
+
+  /**
+   * Read on the primary: the id filter is built from this, and an id missing from it would be
+   * answered as not found.
+   */
+  @Override
+  @Transactional
+  public void forEachId(Consumer<UUID> action) {
+    try (Stream<UUID> ids = jpa.streamAllIds()) {
+      ids.forEach(action);
+    }
+  }
+
+  /**
+   * Over plain JDBC outside a transaction, so on the primary like {@link #forEachId}, and
+   * without creating an entity per payment.
+   */
+  @Override
+  public void forEachIdParallel(int parallelism, Consumer<UUID> action) {
+    PartitionedIdScan.forEachId(List.of(dataSource), parallelism, action);
+  }
+
+  /**
+   * Read on the primary: the replica may not have the end of the window yet, and whatever it
+   * misses would never be settled.
+   */
+  @Override
+  @Transactional
+  public void forEachInIdRange(PaymentStatus status, UUID fromId, UUID toId,
+      Consumer<Payment> action) {
+    try (Stream<Payment> payments = jpa.streamInIdRange(status, fromId, toId)) {
+      payments.forEach(action);
+    }
+  }
+
+  /**
+   * Read on the primary, so a payment that was just resolved is not listed again.
+   */
+  @Override
+  @Transactional
+  public void forEachWithStatus(PaymentStatus status, Consumer<Payment> action) {
+    try (Stream<Payment> payments = jpa.streamWithStatus(status)) {
+      payments.forEach(action);
+    }
+  }
+
+  @Override
+  @Transactional
+  public boolean resolvePending(UUID id, PaymentStatus outcome) {
+    return jpa.updateStatus(id, PaymentStatus.PENDING, outcome) == 1;
+  }
+}
@@ -0,0 +1,84 @@
+package com.checkout.payment.gateway.repository.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * Reads all payment ids of one or more databases in parallel. The ids between the lowest and
+ * the highest are cut into ranges of the primary key, more ranges than threads so a dense range
+ * doesn't leave the other threads idle, and each range is streamed with an index range scan
+ * that only reads the {@code id} column.
+ *
+ * <p>Ranges are split on the most significant half of the id in unsigned order, which is how
+ * H2 and PostgreSQL order UUIDs. This works for random ids as well as time-ordered ones, whose
+ * range only spans the time the gateway has been taking payments.
+ */
+final class PartitionedIdScan {
+
+  private static final int RANGES_PER_THREAD = 8;
+  private static final int FETCH_SIZE = 10_000;
+
+  private PartitionedIdScan() {
+  }
+
+  static void forEachId(List<? extends DataSource> databases, int parallelism,
+      Consumer<UUID> action) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+      Thread thread = new Thread(runnable, "payment-id-scan-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<CompletableFuture<Void>> ranges = new ArrayList<>();
+      for (DataSource dataSource : databases) {
+        JdbcTemplate database = new JdbcTemplate(dataSource);
+        database.setFetchSize(FETCH_SIZE);
+        for (Runnable range : ranges(database, parallelism * RANGES_PER_THREAD, action)) {
+          ranges.add(CompletableFuture.runAsync(range, executor));
+        }
+      }
+      CompletableFuture.allOf(ranges.toArray(CompletableFuture[]::new)).join();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static List<Runnable> ranges(JdbcTemplate database, int count,
+      Consumer<UUID> action) {
+    UUID[] bounds = database.queryForObject("SELECT MIN(id), MAX(id) FROM payments",
+        (rs, rowNum) -> new UUID[] {rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)});
+    if (bounds == null || bounds[0] == null) {
+      return List.of();
+    }
+    UUID min = bounds[0];
+    UUID max = bounds[1];
+    long first = min.getMostSignificantBits();
+    long step = Long.divideUnsigned(max.getMostSignificantBits() - first, count);
+    int rangeCount = step == 0 ? 1 : count;
+
+    RowCallbackHandler handler = rs -> action.accept(rs.getObject(1, UUID.class));
+    List<Runnable> ranges = new ArrayList<>(rangeCount);
+    for (int i = 0; i < rangeCount; i++) {
+      UUID from = new UUID(first + i * step, 0);
+      if (i == rangeCount - 1) {
+        ranges.add(() -> database.query(
+            "SELECT id FROM payments WHERE id >= ? AND id <= ?", handler, from, max));
+      } else {
+        UUID to = new UUID(first + (i + 1) * step, 0);
+        ranges.add(() -> database.query(
+            "SELECT id FROM payments WHERE id >= ? AND id < ?", handler, from, to));
+      }
+    }
+    return ranges;
+  }
+}
@@ -0,0 +1,212 @@
+package com.checkout.payment.gateway.repository.impl;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Spreads payments over several databases. The shard of a payment is a hash of its id, so
+ * {@link #findById} only ever touches one shard, while {@link #findAll} queries all shards in
+ * parallel and merges the results.
+ *
+ * <p>The hash depends on the number of shards, so adding, removing or reordering shards would
+ * make the stored payments unreachable. Each shard records its position and the shard count
+ * the first time it is opened, and opening it with a different layout fails.
+ */
+@Slf4j
+public class ShardedPaymentsRepository implements PaymentsRepository, AutoCloseable {
+
+  private static final String INSERT = """
+      INSERT INTO payments (id, status, card_number_last_four, expiry_month, expiry_year, currency, amount)
+      VALUES (?, ?, ?, ?, ?, ?, ?)""";
+  private static final String SELECT = """
+      SELECT id, status, card_number_last_four, expiry_month, expiry_year, currency, amount
+      FROM payments""";
+
+  // rows streamed per round trip when scanning
+  private static final int FETCH_SIZE = 1000;
+
+  private static final RowMapper<Payment> PAYMENT_ROW_MAPPER = (rs, rowNum) -> new Payment(
+      rs.getObject("id", UUID.class),
+      PaymentStatus.valueOf(rs.getString("status")),
+      rs.getString("card_number_last_four"),
+      rs.getInt("expiry_month"),
+      rs.getInt("expiry_year"),
+      rs.getString("currency"),
+      rs.getInt("amount")
+  );
+
+  private final List<DataSource> dataSources;
+  private final List<JdbcTemplate> shards;
+  private final ExecutorService fanOutExecutor;
+
+  public ShardedPaymentsRepository(List<? extends DataSource> dataSources) {
+    if (dataSources.isEmpty()) {
+      throw new IllegalArgumentException("At least one shard must be configured");
+    }
+    this.dataSources = List.copyOf(dataSources);
+    this.shards = this.dataSources.stream().map(dataSource -> {
+      JdbcTemplate template = new JdbcTemplate(dataSource);
+      template.setFetchSize(FETCH_SIZE);
+      return template;
+    }).toList();
+    for (int i = 0; i < shards.size(); i++) {
+      verifyLayout(i);
+    }
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.fanOutExecutor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+      Thread thread = new Thread(runnable, "payments-shard-query-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    log.info("Sharded payments repository started with {} shards", shards.size());
+  }
+
+  @Override
+  public Payment save(Payment payment) {
+    shardFor(payment.getId()).update(INSERT,
+        payment.getId(),
+        payment.getStatus().name(),
+        payment.getCardNumberLastFour(),
+        payment.getExpiryMonth(),
+        payment.getExpiryYear(),
+        payment.getCurrency(),
+        payment.getAmount());
+    return payment;
+  }
+
+  @Override
+  public Optional<Payment> findById(UUID id) {
+    return shardFor(id).query(SELECT + " WHERE id = ?", PAYMENT_ROW_MAPPER, id)
+        .stream()
+        .findFirst();
+  }
+
+  @Override
+  public List<Payment> findAll() {
+    List<CompletableFuture<List<Payment>>> perShard = shards.stream()
+        .map(shard -> CompletableFuture.supplyAsync(
+            () -> shard.query(SELECT, PAYMENT_ROW_MAPPER), fanOutExecutor))
+        .toList();
+
+    List<Payment> payments = new ArrayList<>();
+    perShard.forEach(future -> payments.addAll(future.join()));
+    payments.sort(Comparator.comparing(Payment::getId));
+    return payments;
+  }
+
+  @Override
+  public void forEachId(Consumer<UUID> action) {
+    for (JdbcTemplate shard : shards) {
+      shard.query("SELECT id FROM payments",
+          (RowCallbackHandler) rs -> action.accept(rs.getObject(1, UUID.class)));
+    }
+  }
+
+  @Override
+  public void forEachIdParallel(int parallelism, Consumer<UUID> action) {
+    PartitionedIdScan.forEachId(dataSources, parallelism, action);
+  }
+
+  @Override
+  public void forEachInIdRange(PaymentStatus status, UUID fromId, UUID toId,
+      Consumer<Payment> action) {
+    for (JdbcTemplate shard : shards) {
+      shard.query(SELECT + " WHERE status = ? AND id >= ? AND id < ?",
+          (RowCallbackHandler) rs -> action.accept(PAYMENT_ROW_MAPPER.mapRow(rs, 0)),
+          status.name(), fromId, toId);
+    }
+  }
+
+  @Override
+  public void forEachWithStatus(PaymentStatus status, Consumer<Payment> action) {
+    for (JdbcTemplate shard : shards) {
+      shard.query(SELECT + " WHERE status = ?",
+          (RowCallbackHandler) rs -> action.accept(PAYMENT_ROW_MAPPER.mapRow(rs, 0)),
+          status.name());
+    }
+  }
+
+  @Override
+  public boolean resolvePending(UUID id, PaymentStatus outcome) {
+    return shardFor(id).update("UPDATE payments SET status = ? WHERE id = ? AND status = ?",
+        outcome.name(), id, PaymentStatus.PENDING.name()) == 1;
+  }
+
+  public int shardCount() {
+    return shards.size();
+  }
+
+  public int shardIndex(UUID id) {
+    long hash = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+    // murmur3 finalizer, so ids that only differ in a few bits still spread evenly
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return Math.floorMod(hash, shards.size());
+  }
+
+  private void verifyLayout(int index) {
+    JdbcTemplate shard = shards.get(index);
+    shard.execute("""
+        CREATE TABLE IF NOT EXISTS payments_shard (
+          shard_index INTEGER PRIMARY KEY,
+          shard_count INTEGER NOT NULL
+        )""");
+    List<int[]> recorded = shard.query("SELECT shard_index, shard_count FROM payments_shard",
+        (rs, rowNum) -> new int[] {rs.getInt(1), rs.getInt(2)});
+    if (recorded.isEmpty()) {
+      try {
+        shard.update("INSERT INTO payments_shard (shard_index, shard_count) VALUES (?, ?)",
+            index, shards.size());
+        return;
+      } catch (DuplicateKeyException e) {
+        // another instance opened the shard at the same time
+        verifyLayout(index);
+        return;
+      }
+    }
+    int[] layout = recorded.get(0);
+    if (recorded.size() > 1 || layout[0] != index || layout[1] != shards.size()) {
+      throw new IllegalStateException(("Shard %d of %d was created as shard %d of %d; payments "
+          + "are placed by a hash of their id over the shard count, so the shards must not be "
+          + "added, removed or reordered without migrating them").formatted(
+          index, shards.size(), layout[0], layout[1]));
+    }
+  }
+
+  private JdbcTemplate shardFor(UUID id) {
+    return shards.get(shardIndex(id));
+  }
+
+  @Override
+  public void close() {
+    fanOutExecutor.shutdownNow();
+    for (DataSource dataSource : dataSources) {
+      if (dataSource instanceof AutoCloseable closeable) {
+        try {
+          closeable.close();
+        } catch (Exception e) {
+          log.warn("Failed to close shard datasource", e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.checkout.payment.gateway.repository.impl;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.tiered.ColdSegment;
+import com.checkout.payment.gateway.repository.tiered.ColdSegmentWriter;
+import com.checkout.payment.gateway.repository.tiered.HotTier;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two tier payment storage. New payments go to the in-memory {@link HotTier}; a background job
+ * moves payments older than the hot retention into immutable, compressed {@link ColdSegment}
+ * files and merges segments once there are too many of them. Lookups check the hot tier first
+ * and then the cold segments, newest first.
+ */
+@Slf4j
+public class TieredPaymentsRepository implements PaymentsRepository, AutoCloseable {
+
+  private static final String SEGMENT_PREFIX = "cold-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final Path directory;
+  private final Duration hotRetention;
+  private final int maxColdSegments;
+  private final LongSupplier clock;
+  private final HotTier hot;
+  private final ScheduledExecutorService maintenance;
+
+  // newest first, replaced as a whole so readers never see a half updated list
+  private volatile List<ColdSegment> cold;
+  // segments replaced by compaction, closed on the next run so in-flight reads can finish
+  private final List<ColdSegment> retired = new ArrayList<>();
+  private long nextSegmentNumber;
+
+  public TieredPaymentsRepository(Path directory, Duration hotRetention, int maxColdSegments,
+      LongSupplier clock) throws IOException {
+    this.directory = directory;
+    this.hotRetention = hotRetention;
+    this.maxColdSegments = maxColdSegments;
+    this.clock = clock;
+
+    Files.createDirectories(directory);
+    this.hot = new HotTier(directory.resolve("hot.journal"));
+    this.cold = openSegments();
+    this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "payments-tier-maintenance");
+      thread.setDaemon(true);
+      return thread;
+    });
+    log.info("Tiered payments repository opened in {}: {} hot payments, {} cold segments",
+        directory, hot.size(), cold.size());
+  }
+
+  public void startMaintenance(Duration interval) {
+    maintenance.scheduleWithFixedDelay(() -> {
+      try {
+        runMaintenance();
+      } catch (Exception e) {
+        log.error("Payments tier maintenance failed", e);
+      }
+    }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Payment save(Payment payment) {
+    try {
+      hot.put(payment, clock.getAsLong());
+      return payment;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to journal payment " + payment.getId(), e);
+    }
+  }
+
+  @Override
+  public Optional<Payment> findById(UUID id) {
+    Payment recent = hot.get(id);
+    if (recent != null) {
+      return Optional.of(recent);
+    }
+    for (ColdSegment segment : cold) {
+      Optional<Payment> payment = segment.find(id);
+      if (payment.isPresent()) {
+        return payment;
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public List<Payment> findAll() {
+    // a payment can briefly be in both tiers while it is being migrated
+    Map<UUID, Payment> payments = new LinkedHashMap<>();
+    for (ColdSegment segment : cold) {
+      segment.iterator().forEachRemaining(payment -> payments.put(payment.getId(), payment));
+    }
+    hot.payments().forEach(payment -> payments.put(payment.getId(), payment));
+    return payments.values().stream().sorted(Comparator.comparing(Payment::getId)).toList();
+  }
+
+  @Override
+  public void forEachId(Consumer<UUID> action) {
+    for (ColdSegment segment : cold) {
+      segment.iterator().forEachRemaining(payment -> action.accept(payment.getId()));
+    }
+    hot.payments().forEach(payment -> action.accept(payment.getId()));
+  }
+
+  /**
+   * Reads the cold segments from {@code fromId} on, found through their sparse indexes, and
+   * stops at {@code toId}, so a window costs about its own blocks, not the whole cold tier.
+   */
+  @Override
+  public void forEachInIdRange(PaymentStatus status, UUID fromId, UUID toId,
+      Consumer<Payment> action) {
+    forEach(status, fromId, toId, action);
+  }
+
+  @Override
+  public void forEachWithStatus(PaymentStatus status, Consumer<Payment> action) {
+    forEach(status, null, null, action);
+  }
+
+  /**
+   * The resolved payment is written to the hot tier, where it shadows the pending copy in the
+   * cold tier. Runs under the maintenance lock, so the pending copy it reads is not being moved
+   * meanwhile.
+   */
+  @Override
+  public synchronized boolean resolvePending(UUID id, PaymentStatus outcome) {
+    Optional<Payment> pending = findById(id)
+        .filter(payment -> payment.getStatus() == PaymentStatus.PENDING);
+    pending.ifPresent(payment -> save(new Payment(payment.getId(), outcome,
+        payment.getCardNumberLastFour(), payment.getExpiryMonth(), payment.getExpiryYear(),
+        payment.getCurrency(), payment.getAmount())));
+    return pending.isPresent();
+  }
+
+  /**
+   * @param fromId first id, or null for no lower bound
+   * @param toId id past the last one, or null for no upper bound
+   */
+  private void forEach(PaymentStatus status, UUID fromId, UUID toId, Consumer<Payment> action) {
+    // a payment being migrated or resolved is in both tiers, so the cold copy is skipped
+    Set<UUID> hotIds = new HashSet<>();
+    for (Payment payment : hot.payments()) {
+      if ((fromId == null || payment.getId().compareTo(fromId) >= 0)
+          && (toId == null || payment.getId().compareTo(toId) < 0)) {
+        hotIds.add(payment.getId());
+        if (payment.getStatus() == status) {
+          action.accept(payment);
+        }
+      }
+    }
+    Iterator<Payment> merged = ColdSegment.mergeSorted(cold, fromId);
+    UUID previous = null;
+    while (merged.hasNext()) {
+      Payment payment = merged.next();
+      if (toId != null && payment.getId().compareTo(toId) >= 0) {
+        return;
+      }
+      if (!payment.getId().equals(previous) && !hotIds.contains(payment.getId())
+          && payment.getStatus() == status) {
+        action.accept(payment);
+      }
+      previous = payment.getId();
+    }
+  }
+
+  public int hotSize() {
+    return hot.size();
+  }
+
+  public int coldSegmentCount() {
+    return cold.size();
+  }
+
+  public synchronized void runMaintenance() throws IOException {
+    closeRetired();
+    migrateToCold();
+    compactCold();
+  }
+
+  private void migrateToCold() throws IOException {
+    List<HotTier.Entry> expired = hot.storedBefore(clock.getAsLong() - hotRetention.toMillis());
+    if (expired.isEmpty()) {
+      return;
+    }
+    Path file = nextSegmentFile();
+    ColdSegmentWriter.write(file, expired.stream().map(HotTier.Entry::payment).iterator(),
+        expired.size());
+    ColdSegment segment = ColdSegment.open(file);
+
+    // publish the segment before dropping the payments from memory, so they stay visible; one
+    // stored again meanwhile stays in the hot tier, where it shadows the copy just moved
+    cold = Stream.concat(Stream.of(segment), cold.stream()).toList();
+    hot.removeAll(expired);
+    log.info("Moved {} payments to cold segment {}", expired.size(), file.getFileName());
+  }
+
+  private void compactCold() throws IOException {
+    List<ColdSegment> segments = cold;
+    if (segments.size() <= maxColdSegments) {
+      return;
+    }
+    long expected = segments.stream().mapToLong(ColdSegment::recordCount).sum();
+    Path file = nextSegmentFile();
+    Iterator<Payment> merged = ColdSegment.mergeSorted(segments);
+    ColdSegmentWriter.write(file, merged, expected);
+
+    cold = List.of(ColdSegment.open(file));
+    retired.addAll(segments);
+    log.info("Compacted {} cold segments into {}", segments.size(), file.getFileName());
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    maintenance.shutdownNow();
+    hot.close();
+    for (ColdSegment segment : cold) {
+      segment.close();
+    }
+    closeRetired();
+  }
+
+  private void closeRetired() throws IOException {
+    for (ColdSegment segment : retired) {
+      segment.close();
+      Files.deleteIfExists(segment.file());
+    }
+    retired.clear();
+  }
+
+  private List<ColdSegment> openSegments() throws IOException {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+          .toList();
+    }
+
+    List<ColdSegment> segments = new ArrayList<>();
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      if (name.endsWith(SEGMENT_SUFFIX)) {
+        segments.add(ColdSegment.open(file));
+        nextSegmentNumber = Math.max(nextSegmentNumber, segmentNumber(name) + 1);
+      } else {
+        // left over from a migration or compaction that did not finish
+        Files.delete(file);
+      }
+    }
+    segments.sort(Comparator.comparingLong(
+        (ColdSegment segment) -> segmentNumber(segment.file().getFileName().toString()))
+        .reversed());
+    return List.copyOf(segments);
+  }
+
+  private Path nextSegmentFile() {
+    return directory.resolve("%s%016d%s".formatted(SEGMENT_PREFIX, nextSegmentNumber++,
+        SEGMENT_SUFFIX));
+  }
+
+  private static long segmentNumber(String fileName) {
+    return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(),
+        fileName.length() - SEGMENT_SUFFIX.length()));
+  }
+}
@@ -0,0 +1,227 @@
+package com.checkout.payment.gateway.repository.index;
+
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Set of all stored payment ids, used to answer lookups of unknown ids without going to the
+ * repository. It is rebuilt from the repository at startup and updated on every save; until the
+ * rebuild has finished every id is treated as possibly present. By default it is an exact
+ * {@link PaymentIdIndex}, which costs about 32 bytes per id and never lets an unknown id
+ * through; with {@code payments.id-filter.exact=false} a bloom filter is used instead, which is
+ * smaller but lets through a share of them.
+ *
+ * <p>The filter only sees the payments saved through this instance after the rebuild. When
+ * the database is shared with other instances (jpa and sharded storage), it only answers for
+ * ids it can know about: time-ordered ids created more than {@code recent-window} before the
+ * rebuild started, which were saved by the time it read the repository, and, when all
+ * instances generate time-ordered ids, ids of any other kind. Everything else goes to the
+ * repository. With {@code payments.id-filter.single-instance} (e.g. tiered storage, whose
+ * files belong to one instance) it answers for every id.
+ *
+ * <p>The rebuild reads the repository with several threads. It runs in a synchronous
+ * {@link ApplicationReadyEvent} listener, and the readiness state only becomes
+ * {@code ACCEPTING_TRAFFIC} once the listeners have returned, so a load balancer following the
+ * readiness probe doesn't send traffic to an instance that is still loading.
+ */
+@Component
+@Slf4j
+public class PaymentIdFilter implements MeterBinder {
+
+  private static final int TIME_ORDERED_VERSION = 7;
+
+  private final PaymentsRepository repo;
+  private final boolean enabled;
+  private final int rebuildThreads;
+  private final boolean singleInstance;
+  private final long recentWindowMillis;
+  private final boolean idsTimeOrdered;
+  private final PaymentIdSet filter;
+  // added to by every rebuild thread
+  private final LongAdder loaded = new LongAdder();
+  private final LongAdder definiteMisses = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+  private volatile boolean ready;
+  // creation time of the newest time-ordered id the rebuild is sure to have seen
+  private volatile long coveredBefore;
+
+  public PaymentIdFilter(
+      PaymentsRepository repo,
+      @Value("${payments.id-filter.enabled:true}") boolean enabled,
+      @Value("${payments.id-filter.expected-insertions:1000000}") long expectedInsertions,
+      @Value("${payments.id-filter.false-positive-rate:0.01}") double falsePositiveRate,
+      @Value("${payments.id-filter.exact:true}") boolean exact,
+      @Value("${payments.id-filter.rebuild-threads:4}") int rebuildThreads,
+      @Value("${payments.id-filter.single-instance:false}") boolean singleInstance,
+      @Value("${payments.id-filter.recent-window:5m}") Duration recentWindow,
+      @Value("${payment.id.generator:time-ordered}") String idGenerator) {
+    this.repo = repo;
+    this.enabled = enabled;
+    this.rebuildThreads = rebuildThreads;
+    this.singleInstance = singleInstance;
+    this.recentWindowMillis = recentWindow.toMillis();
+    this.idsTimeOrdered = idGenerator.equals("time-ordered");
+    this.filter = exact
+        ? new PaymentIdIndex(expectedInsertions)
+        : new ScalableUuidBloomFilter(expectedInsertions, falsePositiveRate);
+  }
+
+  /**
+   * For filters created outside of Spring, starting from the defaults of the properties.
+   */
+  public static Builder builder(PaymentsRepository repo) {
+    return new Builder(repo);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void rebuild() {
+    if (!enabled) {
+      return;
+    }
+    long start = System.nanoTime();
+    coveredBefore = System.currentTimeMillis() - recentWindowMillis;
+    repo.forEachIdParallel(rebuildThreads, id -> {
+      filter.put(id);
+      loaded.increment();
+    });
+    ready = true;
+    log.info("Payment id filter rebuilt with {} ids in {} ms ({}, {} bytes)",
+        loaded.sum(), (System.nanoTime() - start) / 1_000_000,
+        filter.getClass().getSimpleName(), filter.sizeInBytes());
+  }
+
+  public void add(UUID id) {
+    if (enabled) {
+      filter.put(id);
+    }
+  }
+
+  public boolean isDefinitelyAbsent(UUID id) {
+    if (!ready || !covers(id) || filter.mightContain(id)) {
+      return false;
+    }
+    definiteMisses.increment();
+    return true;
+  }
+
+  private boolean covers(UUID id) {
+    if (singleInstance) {
+      return true;
+    }
+    if (id.version() == TIME_ORDERED_VERSION) {
+      // newer payments may have been saved by another instance after the rebuild read them
+      return (id.getMostSignificantBits() >>> 16) < coveredBefore;
+    }
+    // other instances only create time-ordered ids, so any other id was there for the rebuild
+    return idsTimeOrdered;
+  }
+
+  /**
+   * Called when the filter let a lookup through but the repository had no such payment.
+   */
+  public void recordFalsePositive() {
+    if (ready) {
+      falsePositives.increment();
+    }
+  }
+
+  public double falsePositiveRate() {
+    long fp = falsePositives.sum();
+    long negatives = fp + definiteMisses.sum();
+    return negatives == 0 ? 0.0 : (double) fp / negatives;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("payments.id.filter.misses", definiteMisses, LongAdder::sum)
+        .description("Lookups of unknown ids answered by the filter")
+        .register(registry);
+    FunctionCounter.builder("payments.id.filter.false.positives", falsePositives, LongAdder::sum)
+        .description("Lookups of unknown ids the filter let through to the repository")
+        .register(registry);
+    Gauge.builder("payments.id.filter.false.positive.rate", this,
+            PaymentIdFilter::falsePositiveRate)
+        .register(registry);
+    Gauge.builder("payments.id.filter.size", filter, PaymentIdSet::sizeInBytes)
+        .baseUnit("bytes")
+        .register(registry);
+    FunctionCounter.builder("payments.id.filter.rebuild.loaded", loaded, LongAdder::sum)
+        .description("Ids loaded into the filter by the startup rebuild")
+        .register(registry);
+    Gauge.builder("payments.id.filter.ready", this, idFilter -> idFilter.ready ? 1 : 0)
+        .description("Whether the startup rebuild has finished")
+        .register(registry);
+  }
+
+  public static final class Builder {
+
+    private final PaymentsRepository repo;
+    private boolean enabled = true;
+    private long expectedInsertions = 1_000_000;
+    private double falsePositiveRate = 0.01;
+    private boolean exact = true;
+    private int rebuildThreads = 4;
+    private boolean singleInstance;
+    private Duration recentWindow = Duration.ofMinutes(5);
+    private String idGenerator = "time-ordered";
+
+    private Builder(PaymentsRepository repo) {
+      this.repo = repo;
+    }
+
+    public Builder enabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder expectedInsertions(long expectedInsertions) {
+      this.expectedInsertions = expectedInsertions;
+      return this;
+    }
+
+    /**
+     * Switches to a bloom filter with the given false positive rate.
+     */
+    public Builder bloomFilter(double falsePositiveRate) {
+      this.exact = false;
+      this.falsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    public Builder rebuildThreads(int rebuildThreads) {
+      this.rebuildThreads = rebuildThreads;
+      return this;
+    }
+
+    public Builder singleInstance(boolean singleInstance) {
+      this.singleInstance = singleInstance;
+      return this;
+    }
+
+    public Builder recentWindow(Duration recentWindow) {
+      this.recentWindow = recentWindow;
+      return this;
+    }
+
+    public Builder idGenerator(String idGenerator) {
+      this.idGenerator = idGenerator;
+      return this;
+    }
+
+    public PaymentIdFilter build() {
+      return new PaymentIdFilter(repo, enabled, expectedInsertions, falsePositiveRate, exact,
+          rebuildThreads, singleInstance, recentWindow, idGenerator);
+    }
+  }
+}
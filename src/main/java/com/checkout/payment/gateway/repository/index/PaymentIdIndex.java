@@ -0,0 +1,158 @@
+package com.checkout.payment.gateway.repository.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.UUID;
+
+/**
+ * Exact set of payment ids kept as primitive longs. Each id takes two adjacent slots of a
+ * {@code long[]} open-addressing table, so a lookup is one or two cache lines and there is no
+ * {@link UUID} or entry object per id.
+ *
+ * <p>The table is split into segments by the top bits of the hash. Adds lock their segment only,
+ * so a parallel rebuild rarely contends; lookups take no lock. The lsb of a slot is written
+ * before its msb is published, and a zero msb marks an empty slot, so the nil id can't be
+ * stored.
+ */
+public class PaymentIdIndex implements PaymentIdSet {
+
+  private static final int SEGMENT_BITS = 6;
+  private static final int SEGMENTS = 1 << SEGMENT_BITS;
+  private static final double MAX_LOAD = 0.5;
+  private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  public PaymentIdIndex(long expectedIds) {
+    int perSegment = (int) Math.min(1 << 24, Math.max(16, expectedIds / SEGMENTS));
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(perSegment);
+    }
+  }
+
+  @Override
+  public void put(UUID id) {
+    put(id.getMostSignificantBits(), id.getLeastSignificantBits());
+  }
+
+  /**
+   * @return whether the id was added, false if it was already present
+   */
+  public boolean put(long msb, long lsb) {
+    if (msb == 0) {
+      throw new IllegalArgumentException("The nil id can't be indexed");
+    }
+    long hash = hash(msb, lsb);
+    return segments[(int) (hash >>> (64 - SEGMENT_BITS))].put(msb, lsb, (int) hash);
+  }
+
+  public boolean contains(UUID id) {
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    if (msb == 0) {
+      return false;
+    }
+    long hash = hash(msb, lsb);
+    return segments[(int) (hash >>> (64 - SEGMENT_BITS))].contains(msb, lsb, (int) hash);
+  }
+
+  @Override
+  public boolean mightContain(UUID id) {
+    return contains(id);
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += (long) segment.table.length * Long.BYTES;
+    }
+    return bytes;
+  }
+
+  private static long hash(long msb, long lsb) {
+    // murmur3 finalizer, time-ordered ids share most of their msb
+    long hash = msb * 0x9e3779b97f4a7c15L ^ lsb;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static final class Segment {
+
+    // msb, lsb pairs; replaced as a whole on resize so readers see either table complete
+    private volatile long[] table;
+    private volatile int size;
+
+    private Segment(int expectedIds) {
+      this.table = new long[2 * capacityFor(expectedIds)];
+    }
+
+    private boolean contains(long msb, long lsb, int hash) {
+      long[] current = table;
+      int mask = current.length / 2 - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        long stored = (long) SLOT.getAcquire(current, 2 * slot);
+        if (stored == 0) {
+          return false;
+        }
+        if (stored == msb && current[2 * slot + 1] == lsb) {
+          return true;
+        }
+      }
+    }
+
+    private synchronized boolean put(long msb, long lsb, int hash) {
+      if (size + 1 > (table.length / 2) * MAX_LOAD) {
+        resize();
+      }
+      if (!insert(table, msb, lsb, hash)) {
+        return false;
+      }
+      size++;
+      return true;
+    }
+
+    private void resize() {
+      long[] old = table;
+      long[] grown = new long[old.length * 2];
+      for (int i = 0; i < old.length; i += 2) {
+        if (old[i] != 0) {
+          insert(grown, old[i], old[i + 1], (int) PaymentIdIndex.hash(old[i], old[i + 1]));
+        }
+      }
+      table = grown;
+    }
+
+    private static boolean insert(long[] table, long msb, long lsb, int hash) {
+      int mask = table.length / 2 - 1;
+      for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+        long stored = table[2 * slot];
+        if (stored == 0) {
+          table[2 * slot + 1] = lsb;
+          SLOT.setRelease(table, 2 * slot, msb);
+          return true;
+        }
+        if (stored == msb && table[2 * slot + 1] == lsb) {
+          return false;
+        }
+      }
+    }
+
+    private static int capacityFor(int expectedIds) {
+      int slots = (int) Math.ceil(expectedIds / MAX_LOAD);
+      return Integer.highestOneBit(Math.max(16, slots - 1)) << 1;
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package com.checkout.payment.gateway.repository.index;
+
+import java.util.UUID;
+
+/**
+ * What {@link PaymentIdFilter} needs from its id set: either an exact {@link PaymentIdIndex} or
+ * an approximate {@link ScalableUuidBloomFilter}.
+ */
+interface PaymentIdSet {
+
+  void put(UUID id);
+
+  boolean mightContain(UUID id);
+
+  long sizeInBytes();
+}
@@ -0,0 +1,81 @@
+package com.checkout.payment.gateway.repository.index;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bloom filter that grows with the number of payments. When the newest stage is full a bigger
+ * stage with a tighter false positive rate is added, which keeps the overall false positive rate
+ * under the configured one however many ids are added. Adds and lookups are lock-free; only
+ * adding a stage takes a lock.
+ */
+public class ScalableUuidBloomFilter implements PaymentIdSet {
+
+  private static final int GROWTH_FACTOR = 2;
+  private static final double TIGHTENING_RATIO = 0.5;
+
+  private record Stage(UuidBloomFilter filter, long capacity, double falsePositiveRate,
+                       AtomicLong count) {
+  }
+
+  private volatile Stage[] stages;
+
+  public ScalableUuidBloomFilter(long initialCapacity, double falsePositiveRate) {
+    // stage rates form a geometric series, so the first stage gets (1 - ratio) of the target
+    this.stages = new Stage[] {
+        stage(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO))
+    };
+  }
+
+  @Override
+  public void put(UUID id) {
+    Stage[] current = stages;
+    Stage stage = current[current.length - 1];
+    if (stage.count().incrementAndGet() > stage.capacity()) {
+      stage = grow(stage);
+      stage.count().incrementAndGet();
+    }
+    stage.filter().put(id);
+  }
+
+  @Override
+  public boolean mightContain(UUID id) {
+    Stage[] current = stages;
+    for (int i = current.length - 1; i >= 0; i--) {
+      if (current[i].filter().mightContain(id)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int stageCount() {
+    return stages.length;
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return Arrays.stream(stages).mapToLong(stage -> stage.filter().sizeInBytes()).sum();
+  }
+
+  private synchronized Stage grow(Stage full) {
+    Stage[] current = stages;
+    Stage last = current[current.length - 1];
+    if (last != full) {
+      // another thread already grew the filter
+      return last;
+    }
+    Stage next = stage(full.capacity() * GROWTH_FACTOR,
+        full.falsePositiveRate() * TIGHTENING_RATIO);
+    Stage[] grown = Arrays.copyOf(current, current.length + 1);
+    grown[current.length] = next;
+    stages = grown;
+    return next;
+  }
+
+  private static Stage stage(long capacity, double falsePositiveRate) {
+    return new Stage(UuidBloomFilter.create(capacity, falsePositiveRate), capacity,
+        falsePositiveRate, new AtomicLong());
+  }
+}
@@ -0,0 +1,94 @@
+package com.checkout.payment.gateway.repository.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed capacity bloom filter over payment ids. Adds and lookups are lock-free and can run
+ * concurrently. {@link #mightContain} never returns false for an id that was added.
+ */
+public class UuidBloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+
+  private UuidBloomFilter(AtomicLongArray words, int hashCount) {
+    this.words = words;
+    this.bitCount = (long) words.length() * Long.SIZE;
+    this.hashCount = hashCount;
+  }
+
+  public static UuidBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+    long n = Math.max(1, expectedInsertions);
+    long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    int wordCount = (int) Math.max(1, (bits + Long.SIZE - 1) / Long.SIZE);
+    int hashCount = (int) Math.max(1, Math.round((double) wordCount * Long.SIZE / n * Math.log(2)));
+    return new UuidBloomFilter(new AtomicLongArray(wordCount), hashCount);
+  }
+
+  public void put(UUID id) {
+    long h1 = h1(id);
+    long h2 = h2(id);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      long mask = 1L << bit;
+      int word = (int) (bit >>> 6);
+      long current = words.get(word);
+      if ((current & mask) == 0) {
+        words.getAndAccumulate(word, mask, (a, b) -> a | b);
+      }
+    }
+  }
+
+  public boolean mightContain(UUID id) {
+    long h1 = h1(id);
+    long h2 = h2(id);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long sizeInBytes() {
+    return (long) words.length() * Long.BYTES;
+  }
+
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(hashCount);
+    out.writeInt(words.length());
+    for (int i = 0; i < words.length(); i++) {
+      out.writeLong(words.get(i));
+    }
+  }
+
+  public static UuidBloomFilter readFrom(DataInput in) throws IOException {
+    int hashCount = in.readInt();
+    AtomicLongArray words = new AtomicLongArray(in.readInt());
+    for (int i = 0; i < words.length(); i++) {
+      words.set(i, in.readLong());
+    }
+    return new UuidBloomFilter(words, hashCount);
+  }
+
+  private static long h1(UUID id) {
+    return mix(id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32));
+  }
+
+  private static long h2(UUID id) {
+    // odd, so consecutive probes never collapse onto the same bit
+    return mix(id.getLeastSignificantBits() + 0x9E3779B97F4A7C15L) | 1;
+  }
+
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -0,0 +1,65 @@
+package com.checkout.payment.gateway.repository.replica;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Tells which payments are too recent to be read from the replica, which can be behind the
+ * primary by up to {@code window}.
+ *
+ * <p>Time-ordered (version 7) ids carry their creation time, so they need no state and also
+ * cover payments created through another instance. Other ids are remembered for the window
+ * after this instance wrote them.
+ */
+public class ReadYourWrites {
+
+  private static final int TIME_ORDERED_VERSION = 7;
+
+  private final long windowMillis;
+  private final LongSupplier clock;
+  // oldest first
+  private final Queue<Write> writes = new ConcurrentLinkedQueue<>();
+  private final Set<UUID> recentIds = ConcurrentHashMap.newKeySet();
+
+  public ReadYourWrites(Duration window, LongSupplier clock) {
+    this.windowMillis = window.toMillis();
+    this.clock = clock;
+  }
+
+  public void written(UUID id) {
+    if (id.version() == TIME_ORDERED_VERSION) {
+      return;
+    }
+    long now = clock.getAsLong();
+    expire(now);
+    recentIds.add(id);
+    writes.add(new Write(id, now));
+  }
+
+  public boolean isRecent(UUID id) {
+    long now = clock.getAsLong();
+    if (id.version() == TIME_ORDERED_VERSION) {
+      long createdAt = id.getMostSignificantBits() >>> 16;
+      return now - createdAt < windowMillis;
+    }
+    expire(now);
+    return recentIds.contains(id);
+  }
+
+  private void expire(long now) {
+    Write oldest;
+    while ((oldest = writes.peek()) != null && now - oldest.at() >= windowMillis) {
+      if (writes.remove(oldest)) {
+        recentIds.remove(oldest.id());
+      }
+    }
+  }
+
+  private record Write(UUID id, long at) {
+  }
+}
@@ -0,0 +1,32 @@
+package com.checkout.payment.gateway.repository.replica;
+
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to the replica and everything else, including statements outside
+ * a transaction, to the primary. The read-only flag is only set once the transaction has begun,
+ * so this has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}
+ * that fetches the connection on the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+  enum Route {
+    PRIMARY, REPLICA
+  }
+
+  public ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+    setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+        ? Route.REPLICA
+        : Route.PRIMARY;
+  }
+}
@@ -0,0 +1,270 @@
+package com.checkout.payment.gateway.repository.tiered;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.index.UuidBloomFilter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read side of a segment written by {@link ColdSegmentWriter}. The sparse index and the bloom
+ * filter are kept in memory, so a lookup costs at most one block read and decompression, and
+ * ids that are not in the segment are usually answered by the bloom filter alone.
+ */
+public class ColdSegment implements Closeable {
+
+  private final Path file;
+  private final FileChannel channel;
+  private final long[] firstMostSigBits;
+  private final long[] firstLeastSigBits;
+  private final long[] offsets;
+  private final int[] compressedLengths;
+  private final int[] rawLengths;
+  private final UuidBloomFilter bloom;
+  private final long recordCount;
+
+  private ColdSegment(Path file, FileChannel channel, int blockCount, UuidBloomFilter bloom,
+      long recordCount) {
+    this.file = file;
+    this.channel = channel;
+    this.firstMostSigBits = new long[blockCount];
+    this.firstLeastSigBits = new long[blockCount];
+    this.offsets = new long[blockCount];
+    this.compressedLengths = new int[blockCount];
+    this.rawLengths = new int[blockCount];
+    this.bloom = bloom;
+    this.recordCount = recordCount;
+  }
+
+  public static ColdSegment open(Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      DataInputStream footer = new DataInputStream(new ByteArrayInputStream(
+          read(channel, size - ColdSegmentWriter.FOOTER_BYTES, ColdSegmentWriter.FOOTER_BYTES)));
+      long indexOffset = footer.readLong();
+      long bloomOffset = footer.readLong();
+      long recordCount = footer.readLong();
+      int blockCount = footer.readInt();
+      if (footer.readInt() != ColdSegmentWriter.MAGIC) {
+        throw new IOException("Not a payments segment: " + file);
+      }
+
+      DataInputStream index = new DataInputStream(new ByteArrayInputStream(
+          read(channel, indexOffset, (int) (bloomOffset - indexOffset))));
+      DataInputStream bloomIn = new DataInputStream(new ByteArrayInputStream(
+          read(channel, bloomOffset,
+              (int) (size - ColdSegmentWriter.FOOTER_BYTES - bloomOffset))));
+
+      ColdSegment segment = new ColdSegment(file, channel, blockCount,
+          UuidBloomFilter.readFrom(bloomIn), recordCount);
+      for (int i = 0; i < blockCount; i++) {
+        segment.firstMostSigBits[i] = index.readLong();
+        segment.firstLeastSigBits[i] = index.readLong();
+        segment.offsets[i] = index.readLong();
+        segment.compressedLengths[i] = index.readInt();
+        segment.rawLengths[i] = index.readInt();
+      }
+      return segment;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public Optional<Payment> find(UUID id) {
+    if (!bloom.mightContain(id)) {
+      return Optional.empty();
+    }
+    int block = blockFor(id);
+    if (block < 0) {
+      return Optional.empty();
+    }
+    for (Payment payment : readBlock(block)) {
+      if (payment.getId().equals(id)) {
+        return Optional.of(payment);
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * @return all payments of the segment in id order, decompressing one block at a time
+   */
+  public Iterator<Payment> iterator() {
+    return iterator(0, null);
+  }
+
+  /**
+   * @return the payments from the given id on, in id order, starting with the block the sparse
+   *     index has for it rather than the first one
+   */
+  public Iterator<Payment> iterator(UUID fromId) {
+    return iterator(Math.max(0, blockFor(fromId)), fromId);
+  }
+
+  private Iterator<Payment> iterator(int firstBlock, UUID fromId) {
+    return new Iterator<>() {
+      private int block = firstBlock;
+      private Iterator<Payment> current = List.<Payment>of().iterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext() && block < offsets.length) {
+          List<Payment> payments = readBlock(block);
+          if (block == firstBlock && fromId != null) {
+            payments = payments.stream()
+                .filter(payment -> payment.getId().compareTo(fromId) >= 0)
+                .toList();
+          }
+          current = payments.iterator();
+          block++;
+        }
+        return current.hasNext();
+      }
+
+      @Override
+      public Payment next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return current.next();
+      }
+    };
+  }
+
+  /**
+   * Merges segments, given newest first, into a single id-ordered stream, for compaction. A
+   * payment in several segments, e.g. a pending payment that was resolved later, comes first
+   * from the newest one.
+   */
+  public static Iterator<Payment> mergeSorted(List<ColdSegment> segments) {
+    return mergeSorted(segments, null);
+  }
+
+  /**
+   * Like {@link #mergeSorted(List)}, from the given id on, or from the start if it is null.
+   */
+  public static Iterator<Payment> mergeSorted(List<ColdSegment> segments, UUID fromId) {
+    record Head(Payment payment, Iterator<Payment> rest, int age) {
+    }
+    PriorityQueue<Head> heads = new PriorityQueue<>(
+        Comparator.comparing((Head head) -> head.payment().getId())
+            .thenComparingInt(Head::age));
+    for (int age = 0; age < segments.size(); age++) {
+      ColdSegment segment = segments.get(age);
+      Iterator<Payment> it = fromId == null ? segment.iterator() : segment.iterator(fromId);
+      if (it.hasNext()) {
+        heads.add(new Head(it.next(), it, age));
+      }
+    }
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return !heads.isEmpty();
+      }
+
+      @Override
+      public Payment next() {
+        Head head = heads.poll();
+        if (head == null) {
+          throw new NoSuchElementException();
+        }
+        if (head.rest().hasNext()) {
+          heads.add(new Head(head.rest().next(), head.rest(), head.age()));
+        }
+        return head.payment();
+      }
+    };
+  }
+
+  public long recordCount() {
+    return recordCount;
+  }
+
+  public Path file() {
+    return file;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * @return the last block whose first id is not greater than the given id, or -1
+   */
+  private int blockFor(UUID id) {
+    long msb = id.getMostSignificantBits();
+    long lsb = id.getLeastSignificantBits();
+    int low = 0;
+    int high = offsets.length - 1;
+    int found = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      // same ordering as UUID.compareTo, which the writer sorted by
+      int cmp = Long.compare(firstMostSigBits[mid], msb);
+      if (cmp == 0) {
+        cmp = Long.compare(firstLeastSigBits[mid], lsb);
+      }
+      if (cmp <= 0) {
+        found = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  private List<Payment> readBlock(int block) {
+    try {
+      byte[] compressed = read(channel, offsets[block], compressedLengths[block]);
+      byte[] raw = new byte[rawLengths[block]];
+      Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(compressed);
+        inflater.inflate(raw);
+      } finally {
+        inflater.end();
+      }
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+      List<Payment> payments = new ArrayList<>(ColdSegmentWriter.RECORDS_PER_BLOCK);
+      while (in.available() > 0) {
+        payments.add(PaymentRecordCodec.read(in));
+      }
+      return payments;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to read block " + block + " of " + file, e);
+    } catch (DataFormatException e) {
+      throw new UncheckedIOException(new IOException("Corrupt block " + block + " of " + file, e));
+    }
+  }
+
+  private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of segment");
+      }
+    }
+    return buffer.array();
+  }
+}
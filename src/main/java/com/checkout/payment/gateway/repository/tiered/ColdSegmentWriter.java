@@ -0,0 +1,169 @@
+package com.checkout.payment.gateway.repository.tiered;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.index.UuidBloomFilter;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an immutable cold tier segment from payments sorted by id.
+ *
+ * <p>Layout: deflate compressed blocks of {@value #RECORDS_PER_BLOCK} records, then the sparse
+ * index (first id, offset and lengths of every block), then the bloom filter, then a fixed size
+ * footer with their offsets. The file is written next to the target and atomically moved into
+ * place, so a segment is either complete or absent.
+ */
+public final class ColdSegmentWriter {
+
+  static final int MAGIC = 0x50415953;
+  static final int FOOTER_BYTES = 3 * Long.BYTES + 2 * Integer.BYTES;
+  static final int RECORDS_PER_BLOCK = 128;
+  private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+  private ColdSegmentWriter() {
+  }
+
+  public static void write(Path target, Iterator<Payment> sortedPayments, long expectedCount)
+      throws IOException {
+    Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+    UuidBloomFilter bloom = UuidBloomFilter.create(expectedCount, BLOOM_FALSE_POSITIVE_RATE);
+    List<long[]> index = new ArrayList<>();
+
+    try (CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(
+        Files.newOutputStream(tmp, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING)));
+        DataOutputStream out = new DataOutputStream(counting)) {
+
+      ByteArrayOutputStream block = new ByteArrayOutputStream();
+      DataOutputStream blockOut = new DataOutputStream(block);
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      byte[] buffer = new byte[64 * 1024];
+      UUID firstInBlock = null;
+      int recordsInBlock = 0;
+      long recordCount = 0;
+      UUID previous = null;
+
+      try {
+        while (sortedPayments.hasNext()) {
+          Payment payment = sortedPayments.next();
+          if (payment.getId().equals(previous)) {
+            // the same payment can sit in two segments after an interrupted migration
+            continue;
+          }
+          previous = payment.getId();
+          if (firstInBlock == null) {
+            firstInBlock = payment.getId();
+          }
+          PaymentRecordCodec.write(blockOut, payment);
+          bloom.put(payment.getId());
+          recordsInBlock++;
+          recordCount++;
+
+          if (recordsInBlock == RECORDS_PER_BLOCK) {
+            index.add(flushBlock(out, counting, block, deflater, buffer, firstInBlock));
+            firstInBlock = null;
+            recordsInBlock = 0;
+          }
+        }
+        if (recordsInBlock > 0) {
+          index.add(flushBlock(out, counting, block, deflater, buffer, firstInBlock));
+        }
+      } finally {
+        deflater.end();
+      }
+
+      out.flush();
+      long indexOffset = counting.count;
+      for (long[] entry : index) {
+        out.writeLong(entry[0]);
+        out.writeLong(entry[1]);
+        out.writeLong(entry[2]);
+        out.writeInt((int) entry[3]);
+        out.writeInt((int) entry[4]);
+      }
+      out.flush();
+      long bloomOffset = counting.count;
+      bloom.writeTo(out);
+
+      out.writeLong(indexOffset);
+      out.writeLong(bloomOffset);
+      out.writeLong(recordCount);
+      out.writeInt(index.size());
+      out.writeInt(MAGIC);
+    }
+
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+      channel.force(true);
+    }
+    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * @return index entry: first id (msb, lsb), offset, compressed length, raw length
+   */
+  private static long[] flushBlock(DataOutputStream out, CountingOutputStream counting,
+      ByteArrayOutputStream block, Deflater deflater, byte[] buffer, UUID firstInBlock)
+      throws IOException {
+    out.flush();
+    long offset = counting.count;
+    byte[] raw = block.toByteArray();
+    block.reset();
+
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    long compressedLength = 0;
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buffer);
+      out.write(buffer, 0, n);
+      compressedLength += n;
+    }
+    return new long[] {firstInBlock.getMostSignificantBits(),
+        firstInBlock.getLeastSignificantBits(), offset, compressedLength, raw.length};
+  }
+
+  private static final class CountingOutputStream extends OutputStream {
+
+    private final OutputStream delegate;
+    private long count;
+
+    private CountingOutputStream(OutputStream delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      delegate.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      delegate.write(b, off, len);
+      count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.checkout.payment.gateway.repository.tiered;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Recent payments, held in memory and backed by an append-only journal so they survive a
+ * restart. The journal is replayed on startup and rewritten whenever payments move to the cold
+ * tier.
+ *
+ * <p>A payment is forced to disk before {@link #put} returns, and a rewritten journal before it
+ * replaces the old one, so a stored payment survives a power failure as well as a crash of the
+ * process. Writes are serialized, so each put costs one fsync.
+ */
+@Slf4j
+public class HotTier implements Closeable {
+
+  /**
+   * A payment as stored, compared by identity of the payment, so a payment stored again is a
+   * different entry.
+   */
+  public record Entry(Payment payment, long storedAt) {
+  }
+
+  private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+  private final Path journalFile;
+  private FileChannel journalChannel;
+  private DataOutputStream journal;
+
+  public HotTier(Path journalFile) throws IOException {
+    this.journalFile = journalFile;
+    replayJournal();
+    rewriteJournal();
+  }
+
+  public synchronized void put(Payment payment, long storedAt) throws IOException {
+    appendRecord(journal, payment, storedAt);
+    journal.flush();
+    journalChannel.force(false);
+    entries.put(payment.getId(), new Entry(payment, storedAt));
+  }
+
+  public Payment get(UUID id) {
+    Entry entry = entries.get(id);
+    return entry == null ? null : entry.payment();
+  }
+
+  public Collection<Payment> payments() {
+    return entries.values().stream().map(Entry::payment).toList();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return entries stored before the cut-off, sorted by payment id
+   */
+  public List<Entry> storedBefore(long cutoff) {
+    return entries.values().stream()
+        .filter(entry -> entry.storedAt() < cutoff)
+        .sorted(Comparator.comparing(entry -> entry.payment().getId()))
+        .toList();
+  }
+
+  /**
+   * Removes the entries that are still current. A payment stored again since the entry was
+   * taken, for example when it was resolved, is kept.
+   */
+  public synchronized void removeAll(Collection<Entry> stored) throws IOException {
+    stored.forEach(entry -> entries.remove(entry.payment().getId(), entry));
+    rewriteJournal();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (journal != null) {
+      journal.close();
+      journal = null;
+      journalChannel = null;
+    }
+  }
+
+  private void replayJournal() throws IOException {
+    if (!Files.exists(journalFile)) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(journalFile)))) {
+      while (true) {
+        long storedAt = in.readLong();
+        Payment payment = PaymentRecordCodec.read(in);
+        entries.put(payment.getId(), new Entry(payment, storedAt));
+      }
+    } catch (EOFException e) {
+      // end of journal, or a record torn by a crash that is dropped by the rewrite below
+    }
+    log.info("Replayed {} hot payments from {}", entries.size(), journalFile);
+  }
+
+  private void rewriteJournal() throws IOException {
+    close();
+    Path tmp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+      for (Entry entry : entries.values()) {
+        appendRecord(out, entry.payment(), entry.storedAt());
+      }
+      out.flush();
+      channel.force(false);
+    }
+    Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    journalChannel = FileChannel.open(journalFile, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    journal = new DataOutputStream(
+        new BufferedOutputStream(Channels.newOutputStream(journalChannel)));
+  }
+
+  private static void appendRecord(DataOutputStream out, Payment payment, long storedAt)
+      throws IOException {
+    out.writeLong(storedAt);
+    PaymentRecordCodec.write(out, payment);
+  }
+}
@@ -0,0 +1,52 @@
+package com.checkout.payment.gateway.repository.tiered;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Binary layout of a {@link Payment} shared by the hot tier journal, cold tier segments and the
+ * pending intent log.
+ */
+public final class PaymentRecordCodec {
+
+  private PaymentRecordCodec() {
+  }
+
+  public static void write(DataOutput out, Payment payment) throws IOException {
+    out.writeLong(payment.getId().getMostSignificantBits());
+    out.writeLong(payment.getId().getLeastSignificantBits());
+    out.writeUTF(payment.getStatus().name());
+    writeNullable(out, payment.getCardNumberLastFour());
+    out.writeByte(payment.getExpiryMonth());
+    out.writeShort(payment.getExpiryYear());
+    writeNullable(out, payment.getCurrency());
+    out.writeInt(payment.getAmount());
+  }
+
+  public static Payment read(DataInput in) throws IOException {
+    return new Payment(
+        new UUID(in.readLong(), in.readLong()),
+        PaymentStatus.valueOf(in.readUTF()),
+        readNullable(in),
+        in.readUnsignedByte(),
+        in.readUnsignedShort(),
+        readNullable(in),
+        in.readInt()
+    );
+  }
+
+  private static void writeNullable(DataOutput out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
@@ -4,5 +4,5 @@ import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
 
 public interface BankClient {
-  BankAcquiryResponse charge(BankAcquiryRequest request);
-}
\ No newline at end of file
+  BankAcquiryResponse charge(BankAcquiryRequest request, Deadline deadline);
+}
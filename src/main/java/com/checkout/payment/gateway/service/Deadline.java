@@ -0,0 +1,36 @@
+package com.checkout.payment.gateway.service;
+
+import java.time.Duration;
+
+/**
+ * Point in time after which the client is no longer waiting for the result. Based on
+ * {@link System#nanoTime()}, so it is only meaningful within this process.
+ */
+public final class Deadline {
+
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  public static Deadline after(Duration timeout) {
+    return new Deadline(System.nanoTime() + timeout.toNanos());
+  }
+
+  /**
+   * @return this deadline, or one {@code minimum} from now if less than that is left
+   */
+  public Deadline atLeast(Duration minimum) {
+    long extended = System.nanoTime() + minimum.toNanos();
+    return deadlineNanos - extended >= 0 ? this : new Deadline(extended);
+  }
+
+  public Duration remaining() {
+    return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+}
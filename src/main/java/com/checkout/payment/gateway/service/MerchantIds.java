@@ -0,0 +1,50 @@
+package com.checkout.payment.gateway.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Merchants identify themselves with their api key, which is a credential. The controller turns
+ * it into a merchant id, the start of its SHA-256, and only that id is passed on: throttling,
+ * velocity limits, webhooks, recordings and anything they store or tag. Configuration keyed by
+ * api key is converted with {@link #byMerchant} and {@link #ofApiKeys} before use.
+ */
+public final class MerchantIds {
+
+  // requests without an api key, which has no credential to hide
+  public static final String ANONYMOUS = "anonymous";
+
+  // 128 bits, so the merchants' ids don't collide
+  private static final int ID_BYTES = 16;
+
+  private MerchantIds() {
+  }
+
+  public static String fromApiKey(String apiKey) {
+    if (apiKey == null || apiKey.isBlank()) {
+      return ANONYMOUS;
+    }
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(apiKey.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(digest, 0, ID_BYTES);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  public static Set<String> ofApiKeys(Collection<String> apiKeys) {
+    return apiKeys.stream().map(MerchantIds::fromApiKey).collect(Collectors.toUnmodifiableSet());
+  }
+
+  public static <V> Map<String, V> byMerchant(Map<String, V> byApiKey) {
+    return byApiKey.entrySet().stream().collect(Collectors.toUnmodifiableMap(
+        entry -> fromApiKey(entry.getKey()), Map.Entry::getValue));
+  }
+}
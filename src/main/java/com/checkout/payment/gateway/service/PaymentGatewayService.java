@@ -1,5 +1,6 @@
 package com.checkout.payment.gateway.service;
 
+import com.checkout.payment.gateway.cache.SerializedPayment;
 import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import java.util.UUID;
@@ -8,5 +9,11 @@ public interface PaymentGatewayService {
 
   PaymentResponse getPaymentById(UUID id);
 
-  PaymentResponse processPayment(PaymentRequest paymentRequest);
+  /**
+   * Same as {@link #getPaymentById}, already serialized, usually without touching the
+   * repository.
+   */
+  SerializedPayment getSerializedPaymentById(UUID id);
+
+  PaymentResponse processPayment(String merchant, PaymentRequest paymentRequest, Deadline deadline);
 }
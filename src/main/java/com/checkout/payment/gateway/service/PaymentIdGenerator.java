@@ -0,0 +1,14 @@
+package com.checkout.payment.gateway.service;
+
+import java.util.UUID;
+
+public interface PaymentIdGenerator {
+
+  /**
+   * Generates the id of a new payment. The id is also the primary key of the
+   * `payments` table, so implementations should keep it unique across threads and instances.
+   *
+   * @return a new payment id
+   */
+  UUID nextId();
+}
@@ -1,64 +1,203 @@
 package com.checkout.payment.gateway.service.impl;
 
+import com.checkout.payment.gateway.bin.BinRange;
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import com.checkout.payment.gateway.configuration.AcquirerProperties;
 import com.checkout.payment.gateway.exception.AcquirerUnavailableException;
+import com.checkout.payment.gateway.exception.DeadlineExceededException;
 import com.checkout.payment.gateway.exception.InvalidRequestException;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
+import com.checkout.payment.gateway.profiling.AcquirerCallEvent;
 import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.Deadline;
+import com.checkout.payment.gateway.throttling.RetryBudget;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
 
+/**
+ * Charges through the acquirer's HTTP API. Each attempt may take at most what is left of the
+ * caller's deadline. Failures where the acquirer can't have processed the charge (connection
+ * refused, 503) are retried with jittered exponential backoff, as long as the backoff fits in
+ * the deadline and the shared {@link RetryBudget} allows it. Timeouts are not retried, since
+ * the acquirer may have charged the card.
+ *
+ * <p>Cards whose issuer or scheme has an entry in {@code acquirer.routes} are sent to that
+ * acquirer instead of the default one.
+ */
 @Component
 @Slf4j
 public class BankHttpClient implements BankClient {
   private final WebClient webClient;
+  private final Map<String, WebClient> routes = new HashMap<>();
+  private final BinTableRegistry binTable;
+  private final RetryBudget retryBudget;
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
 
   public BankHttpClient(
       WebClient.Builder builder,
-      @Value("${acquirer.url}") String acquirerUrl) {
+      AcquirerProperties properties,
+      RetryBudget retryBudget,
+      BinTableRegistry binTable) {
 
+    properties.getRoutes().forEach((key, url) ->
+        routes.put(key, builder.clone().baseUrl(url).build()));
     this.webClient = builder
-        .baseUrl(acquirerUrl)
+        .baseUrl(properties.getUrl())
         .build();
+    this.binTable = binTable;
+    this.retryBudget = retryBudget;
+    this.maxAttempts = properties.getRetry().getMaxAttempts();
+    this.initialBackoffMillis = properties.getRetry().getInitialBackoff().toMillis();
+    this.maxBackoffMillis = properties.getRetry().getMaxBackoff().toMillis();
   }
 
   @Override
-  public BankAcquiryResponse charge(BankAcquiryRequest request) {
-    log.info("Request to acquirer: amount={} currency={}", request.getAmount(), request.getCurrency());
+  public BankAcquiryResponse charge(BankAcquiryRequest request, Deadline deadline) {
+    AcquirerCallEvent event = new AcquirerCallEvent();
+    event.begin();
+    BankAcquiryResponse response = null;
+    String failure = null;
     try {
-      BankAcquiryResponse response = webClient.post()
+      response = charge(request, deadline, event);
+      return response;
+    } catch (RuntimeException e) {
+      failure = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        if (response != null) {
+          event.setOutcome(response.isAuthorized() ? "Authorized" : "Declined");
+        } else {
+          event.setOutcome(failure);
+        }
+        event.commit();
+      }
+    }
+  }
+
+  private BankAcquiryResponse charge(BankAcquiryRequest request, Deadline deadline,
+      AcquirerCallEvent event) {
+    BinRange range = binTable.lookup(request.getCardNumber());
+    WebClient acquirer = route(range);
+    if (range != null) {
+      event.setScheme(range.scheme());
+    }
+    log.info("Request to acquirer: amount={} currency={} scheme={}", request.getAmount(),
+        request.getCurrency(), range == null ? null : range.scheme());
+    retryBudget.recordCall();
+    for (int attempt = 1; ; attempt++) {
+      event.setAttempts(attempt);
+      try {
+        BankAcquiryResponse response = send(acquirer, request, deadline.remaining());
+        event.setStatusCode(HttpStatus.OK.value());
+        log.info("Received response from acquirer: response={}", response.getAuthorizationCode());
+        return response;
+
+      } catch (WebClientResponseException e) {
+        event.setStatusCode(e.getStatusCode().value());
+        if (e.getStatusCode() != HttpStatus.SERVICE_UNAVAILABLE || !backOff(attempt, deadline)) {
+          throw translate(e);
+        }
+
+      } catch (WebClientRequestException e) {
+        if (!(e.getCause() instanceof ConnectException) || !backOff(attempt, deadline)) {
+          log.error("Failed to connect to acquirer: {}", e.getMessage(), e);
+          throw new AcquirerUnavailableException("Failed to connect to acquirer", e);
+        }
+      }
+    }
+  }
+
+  private WebClient route(BinRange range) {
+    if (range == null || routes.isEmpty()) {
+      return webClient;
+    }
+    // an issuer's own acquirer takes precedence over the one for its scheme
+    WebClient routed = routes.get(range.issuer());
+    if (routed == null) {
+      routed = routes.get(range.scheme());
+    }
+    return routed == null ? webClient : routed;
+  }
+
+  private BankAcquiryResponse send(WebClient acquirer, BankAcquiryRequest request,
+      Duration timeout) {
+    try {
+      BankAcquiryResponse response = acquirer.post()
           .uri("/payments")
           .bodyValue(request)
           .retrieve()
           .bodyToMono(BankAcquiryResponse.class)
+          .timeout(timeout)
           .block();
 
       assert response != null;
-      log.info("Received response from acquirer: response={}", response.getAuthorizationCode());
       return response;
 
-    } catch (WebClientResponseException e) {
-      if (e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
-        throw new AcquirerUnavailableException("Acquirer unavailable", null);
+    } catch (WebClientResponseException | WebClientRequestException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      if (Exceptions.unwrap(e) instanceof TimeoutException) {
+        throw new DeadlineExceededException(
+            "Acquirer did not answer within " + timeout.toMillis() + " ms");
       }
+      throw e;
+    }
+  }
 
-      log.error("HTTP error from acquirer: status={} body={}",
-          e.getStatusCode(), e.getResponseBodyAsString(), e);
+  /**
+   * Waits before the next attempt, if there is one.
+   *
+   * @return false if the failed attempt should not be retried
+   */
+  private boolean backOff(int attempt, Deadline deadline) {
+    if (attempt >= maxAttempts) {
+      return false;
+    }
+    long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+    long backoffMillis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    // a retry that can't finish before the deadline is wasted on the acquirer
+    if (backoffMillis >= deadline.remaining().toMillis() || !retryBudget.tryAcquire()) {
+      return false;
+    }
+    log.warn("Acquirer call failed, retrying in {} ms (attempt {} of {})",
+        backoffMillis, attempt + 1, maxAttempts);
+    try {
+      Thread.sleep(backoffMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    return true;
+  }
 
-      if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
-        throw new InvalidRequestException(
-            "Acquirer rejected request: " + e.getResponseBodyAsString());
-      }
-      throw e;
+  private RuntimeException translate(WebClientResponseException e) {
+    if (e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+      return new AcquirerUnavailableException("Acquirer unavailable", null);
+    }
+
+    log.error("HTTP error from acquirer: status={} body={}",
+        e.getStatusCode(), e.getResponseBodyAsString(), e);
 
-    } catch (WebClientRequestException e) {
-      log.error("Failed to connect to acquirer: {}", e.getMessage(), e);
-      throw new AcquirerUnavailableException("Failed to connect to acquirer", e);
+    if (e.getStatusCode() == HttpStatus.BAD_REQUEST) {
+      return new InvalidRequestException(
+          "Acquirer rejected request: " + e.getResponseBodyAsString());
     }
+    return e;
   }
-}
\ No newline at end of file
+}
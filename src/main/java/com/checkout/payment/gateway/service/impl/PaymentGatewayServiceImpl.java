@@ -1,19 +1,33 @@
 package com.checkout.payment.gateway.service.impl;
 
-import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.cache.PaymentResponseCache;
+import com.checkout.payment.gateway.cache.SerializedPayment;
 import com.checkout.payment.gateway.exception.AcquirerUnavailableException;
+import com.checkout.payment.gateway.exception.DeadlineExceededException;
 import com.checkout.payment.gateway.exception.InvalidRequestException;
 import com.checkout.payment.gateway.exception.NotFoundException;
+import com.checkout.payment.gateway.exception.ShuttingDownException;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
 import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.profiling.PaymentLookupEvent;
+import com.checkout.payment.gateway.profiling.PaymentProcessedEvent;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
 import com.checkout.payment.gateway.repository.PaymentsRepository;
-import java.util.UUID;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
 import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.Deadline;
 import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentIdGenerator;
+import com.checkout.payment.gateway.shutdown.InFlightPayments;
+import com.checkout.payment.gateway.shutdown.InFlightPayments.Stage;
+import com.checkout.payment.gateway.throttling.CardVelocityLimiter;
 import com.checkout.payment.gateway.validation.PaymentRequestValidator;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import java.util.UUID;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -24,41 +38,133 @@ public class PaymentGatewayServiceImpl implements PaymentGatewayService {
   private final PaymentsRepository repo;
   private final BankClient acquirer;
   private final PaymentRequestValidator validator;
+  private final PaymentIdGenerator idGenerator;
+  private final PaymentIdFilter idFilter;
+  private final PaymentIntentLog intentLog;
+  private final CardVelocityLimiter velocityLimiter;
+  private final WebhookPublisher webhookPublisher;
+  private final PaymentResponseCache responseCache;
+  private final InFlightPayments inFlightPayments;
 
-  public PaymentGatewayServiceImpl(PaymentsRepository repo, BankClient acquirer, PaymentRequestValidator validator) {
+  public PaymentGatewayServiceImpl(PaymentsRepository repo, BankClient acquirer,
+      PaymentRequestValidator validator, PaymentIdGenerator idGenerator, PaymentIdFilter idFilter,
+      PaymentIntentLog intentLog, CardVelocityLimiter velocityLimiter,
+      WebhookPublisher webhookPublisher, PaymentResponseCache responseCache,
+      InFlightPayments inFlightPayments) {
     this.repo = repo;
     this.acquirer = acquirer;
     this.validator = validator;
+    this.idGenerator = idGenerator;
+    this.idFilter = idFilter;
+    this.intentLog = intentLog;
+    this.velocityLimiter = velocityLimiter;
+    this.webhookPublisher = webhookPublisher;
+    this.responseCache = responseCache;
+    this.inFlightPayments = inFlightPayments;
   }
 
   @Override
   public PaymentResponse getPaymentById(UUID id) {
     log.info("Retrieving payment with id={}", id);
-    return repo.findById(id)
-        .map(this::toResponse)
-        .orElseThrow(() -> new NotFoundException("Payment not found: " + id));
+    PaymentLookupEvent event = new PaymentLookupEvent();
+    event.begin();
+    String source = PaymentLookupEvent.SOURCE_ID_FILTER;
+    boolean found = false;
+    try {
+      if (idFilter.isDefinitelyAbsent(id)) {
+        // unknown ids are mostly scrapers, so skip the stack trace as well as the repository
+        throw new NotFoundException("Payment not found: " + id, false);
+      }
+      source = PaymentLookupEvent.SOURCE_REPOSITORY;
+      PaymentResponse response = repo.findById(id)
+          .map(this::toResponse)
+          .orElseThrow(() -> {
+            idFilter.recordFalsePositive();
+            return new NotFoundException("Payment not found: " + id);
+          });
+      found = true;
+      return response;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.setPaymentId(id.toString());
+        event.setSource(source);
+        event.setFound(found);
+        event.commit();
+      }
+    }
   }
 
+  @Override
+  public SerializedPayment getSerializedPaymentById(UUID id) {
+    SerializedPayment cached = responseCache.get(id);
+    return cached != null ? cached : responseCache.put(getPaymentById(id));
+  }
 
   @Override
-  public PaymentResponse processPayment(PaymentRequest req) {
-    UUID paymentId = UUID.randomUUID();
+  public PaymentResponse processPayment(String merchant, PaymentRequest req,
+      Deadline deadline) {
+    PaymentProcessedEvent event = new PaymentProcessedEvent();
+    event.begin();
+    PaymentResponse response = null;
+    String failure = null;
     try {
-      validator.validate(req);
-    } catch (InvalidRequestException e) {
-      log.warn("Rejecting payment id={} due to invalid request: {}", paymentId, e.getMessage());
-      return new PaymentResponse(
-          paymentId,
-          PaymentStatus.REJECTED,
-          null,
-          req.getExpiryMonth(),
-          req.getExpiryYear(),
-          req.getCurrency(),
-          req.getAmount()
-      );
+      response = process(merchant, req, deadline, event);
+      return response;
+    } catch (RuntimeException e) {
+      failure = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.setMerchant(merchant);
+        if (response != null) {
+          event.setPaymentId(response.getId().toString());
+          event.setStatus(response.getStatus().getName());
+        } else {
+          event.setStatus(failure);
+        }
+        event.commit();
+      }
     }
+  }
+
+  private PaymentResponse process(String merchant, PaymentRequest req, Deadline deadline,
+      PaymentProcessedEvent event) {
+    if (deadline.isExpired()) {
+      // the caller has given up before the payment got here, nothing was charged
+      throw new DeadlineExceededException("Deadline exceeded before the payment was processed");
+    }
+    UUID paymentId = idGenerator.nextId();
+    if (!inFlightPayments.tryAdmit(paymentId)) {
+      throw new ShuttingDownException("Instance is shutting down, payment not processed");
+    }
+    try {
+      return processAdmitted(merchant, paymentId, req, deadline, event);
+    } finally {
+      inFlightPayments.finish(paymentId);
+    }
+  }
+
+  private PaymentResponse processAdmitted(String merchant, UUID paymentId, PaymentRequest req,
+      Deadline deadline, PaymentProcessedEvent event) {
+    long phaseStart = System.nanoTime();
+    boolean accepted = accept(merchant, paymentId, req);
+    event.setValidationDuration(System.nanoTime() - phaseStart);
+    if (!accepted) {
+      return rejected(paymentId, req);
+    }
+
+    String lastFourCardDigits = lastFourDigits(req.getCardNumber());
+    // once the acquirer has been called the payment must not be lost, even if we crash before
+    // saving it: an intent that is never completed is recovered as PENDING on the next start
+    phaseStart = System.nanoTime();
+    intentLog.begin(toPayment(paymentId, PaymentStatus.PENDING, lastFourCardDigits, req));
+    event.setIntentLogDuration(System.nanoTime() - phaseStart);
 
     PaymentStatus status;
+    inFlightPayments.advance(paymentId, Stage.ACQUIRER);
+    phaseStart = System.nanoTime();
     try {
       log.info("Processing payment id={} currency={} amount={}",
           paymentId, req.getCurrency(), req.getAmount());
@@ -71,18 +177,80 @@ public class PaymentGatewayServiceImpl implements PaymentGatewayService {
           req.getCvv()
       );
 
-      BankAcquiryResponse acqResp = acquirer.charge(acquirerReq);
+      BankAcquiryResponse acqResp = acquirer.charge(acquirerReq, deadline);
       status = acqResp.isAuthorized() ? PaymentStatus.AUTHORIZED : PaymentStatus.DECLINED;
+      if (status == PaymentStatus.DECLINED) {
+        velocityLimiter.recordDecline(merchant, req.getCardNumber());
+      }
       log.info("Acquirer result for id={}: {}", paymentId, status.getName());
 
     } catch (AcquirerUnavailableException e) {
       status = PaymentStatus.DECLINED;
       log.warn("Acquirer unavailable for id={}, marking as Declined", paymentId, e);
+    } catch (DeadlineExceededException e) {
+      // the acquirer may still charge the card, so the outcome is unknown
+      status = PaymentStatus.PENDING;
+      log.warn("No acquirer result for id={} within the deadline, marking as Pending", paymentId);
+    } catch (InvalidRequestException e) {
+      // refused by the acquirer, nothing was charged
+      intentLog.complete(paymentId);
+      throw e;
+    } finally {
+      event.setAcquirerDuration(System.nanoTime() - phaseStart);
     }
 
-    String lastFourCardDigits = lastFourDigits(req.getCardNumber());
+    Payment payment = toPayment(paymentId, status, lastFourCardDigits, req);
 
-    Payment payment = new Payment(
+    inFlightPayments.advance(paymentId, Stage.PERSISTING);
+    phaseStart = System.nanoTime();
+    repo.save(payment);
+    event.setPersistenceDuration(System.nanoTime() - phaseStart);
+    intentLog.complete(paymentId);
+    idFilter.add(paymentId);
+    log.info("Persisted payment id={} with status={}", paymentId, status.getName());
+
+    PaymentResponse response = toResponse(payment);
+    // serialized once, the lookups that follow are served from the cache
+    responseCache.put(response);
+    // only queued here, delivery happens in the background
+    webhookPublisher.paymentProcessed(merchant, response);
+    return response;
+  }
+
+  /**
+   * @return false if the payment must be rejected without calling the acquirer
+   */
+  private boolean accept(String merchant, UUID paymentId, PaymentRequest req) {
+    try {
+      validator.validate(req);
+    } catch (InvalidRequestException e) {
+      log.warn("Rejecting payment id={} due to invalid request: {}", paymentId, e.getMessage());
+      return false;
+    }
+    if (!velocityLimiter.tryAttempt(merchant, req.getCardNumber())) {
+      // most likely card testing, which should not cost an acquirer call
+      log.warn("Rejecting payment id={}: too many attempts with this card or failures with its BIN",
+          paymentId);
+      return false;
+    }
+    return true;
+  }
+
+  private PaymentResponse rejected(UUID paymentId, PaymentRequest req) {
+    return new PaymentResponse(
+        paymentId,
+        PaymentStatus.REJECTED,
+        null,
+        req.getExpiryMonth(),
+        req.getExpiryYear(),
+        req.getCurrency(),
+        req.getAmount()
+    );
+  }
+
+  private Payment toPayment(UUID paymentId, PaymentStatus status, String lastFourCardDigits,
+      PaymentRequest req) {
+    return new Payment(
         paymentId,
         status,
         lastFourCardDigits,
@@ -91,11 +259,6 @@ public class PaymentGatewayServiceImpl implements PaymentGatewayService {
         req.getCurrency(),
         req.getAmount()
     );
-
-    repo.save(payment);
-    log.info("Persisted payment id={} with status={}", paymentId, status.getName());
-
-    return toResponse(payment);
   }
 
   private PaymentResponse toResponse(Payment payment) {
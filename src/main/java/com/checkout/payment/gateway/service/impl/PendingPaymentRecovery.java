@@ -0,0 +1,91 @@
+package com.checkout.payment.gateway.service.impl;
+
+import com.checkout.payment.gateway.configuration.PaymentIntentLogProperties;
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconciles the payment intents left open by the previous run before the instance takes
+ * traffic. An intent whose payment was saved only missed its completion record. Otherwise the
+ * gateway stopped between the acquirer call and the save, and as the acquirer has no lookup by
+ * payment, the payment is saved as {@code PENDING}, to be reconciled through
+ * {@link com.checkout.payment.gateway.settlement.PendingPaymentsEndpoint}.
+ */
+@Component
+@Slf4j
+public class PendingPaymentRecovery implements ApplicationRunner {
+
+  private final PaymentIntentLog intentLog;
+  private final PaymentsRepository repo;
+  private final int threads;
+
+  public PendingPaymentRecovery(PaymentIntentLog intentLog, PaymentsRepository repo,
+      PaymentIntentLogProperties properties) {
+    this.intentLog = intentLog;
+    this.repo = repo;
+    this.threads = properties.getRecoveryThreads();
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    recover();
+  }
+
+  /**
+   * @return the number of payments saved as pending
+   */
+  public int recover() {
+    List<Payment> unfinished = intentLog.unfinished();
+    if (unfinished.isEmpty()) {
+      return 0;
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(threads, unfinished.size()), runnable -> {
+          Thread thread = new Thread(runnable, "payment-recovery-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    AtomicInteger pending = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    try {
+      CompletableFuture.allOf(unfinished.stream()
+          .map(intent -> CompletableFuture.runAsync(() -> {
+            try {
+              if (reconcile(intent)) {
+                pending.incrementAndGet();
+              }
+            } catch (RuntimeException e) {
+              // stays open and is retried on the next start
+              failed.incrementAndGet();
+              log.error("Failed to recover payment id={}", intent.getId(), e);
+            }
+          }, executor))
+          .toArray(CompletableFuture[]::new)).join();
+    } finally {
+      executor.shutdown();
+    }
+    log.info("Recovered {} unfinished payment intents: {} saved as pending, {} failed",
+        unfinished.size(), pending.get(), failed.get());
+    return pending.get();
+  }
+
+  private boolean reconcile(Payment intent) {
+    boolean saved = repo.findById(intent.getId()).isPresent();
+    if (!saved) {
+      repo.save(intent);
+    }
+    intentLog.complete(intent.getId());
+    return !saved;
+  }
+}
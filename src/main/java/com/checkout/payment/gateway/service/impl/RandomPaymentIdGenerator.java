@@ -0,0 +1,16 @@
+package com.checkout.payment.gateway.service.impl;
+
+import com.checkout.payment.gateway.service.PaymentIdGenerator;
+import java.util.UUID;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "payment.id.generator", havingValue = "random")
+public class RandomPaymentIdGenerator implements PaymentIdGenerator {
+
+  @Override
+  public UUID nextId() {
+    return UUID.randomUUID();
+  }
+}
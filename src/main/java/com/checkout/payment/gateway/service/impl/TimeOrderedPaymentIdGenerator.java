@@ -0,0 +1,75 @@
+package com.checkout.payment.gateway.service.impl;
+
+import com.checkout.payment.gateway.service.PaymentIdGenerator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates version 7 (RFC 9562) UUIDs: 48 bits of unix epoch millis, a 12 bit per-thread
+ * sequence and 62 random bits. Ids are time-ordered, so inserts land at the end of the
+ * `payments` primary key index, and all state is thread-local so nothing is shared between cores.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.id.generator", havingValue = "time-ordered",
+    matchIfMissing = true)
+public class TimeOrderedPaymentIdGenerator implements PaymentIdGenerator {
+
+  private static final long VERSION_7 = 0x7L << 12;
+  private static final long VARIANT_RFC = 0x8000000000000000L;
+  private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+  private static final long SEQUENCE_MASK = 0xFFFL;
+  // first sequence of a millisecond starts in the lower half, so the same thread has room to
+  // count up
+  private static final int SEQUENCE_SEED_BOUND = 0x800;
+
+  private final LongSupplier clock;
+  // [0] = last millis used by the thread, [1] = last sequence used in that millisecond
+  private final ThreadLocal<long[]> lastIssued = ThreadLocal.withInitial(() -> new long[2]);
+
+  public TimeOrderedPaymentIdGenerator() {
+    this(System::currentTimeMillis);
+  }
+
+  public TimeOrderedPaymentIdGenerator(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * @return the lowest id that can be generated in the given millisecond, so that the ids of a
+   *     time window are the ids from its start's first id up to its end's
+   */
+  public static UUID firstIdAt(long epochMillis) {
+    return new UUID((epochMillis << 16) | VERSION_7, VARIANT_RFC);
+  }
+
+  @Override
+  public UUID nextId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long[] last = lastIssued.get();
+    long now = clock.getAsLong();
+
+    long millis;
+    long sequence;
+    if (now > last[0]) {
+      millis = now;
+      sequence = random.nextInt(SEQUENCE_SEED_BOUND);
+    } else {
+      // same millisecond or clock moved backwards: keep counting from the last issued id
+      millis = last[0];
+      sequence = last[1] + 1;
+      if (sequence > SEQUENCE_MASK) {
+        millis++;
+        sequence = 0;
+      }
+    }
+    last[0] = millis;
+    last[1] = sequence;
+
+    long mostSigBits = (millis << 16) | VERSION_7 | sequence;
+    long leastSigBits = VARIANT_RFC | (random.nextLong() & RANDOM_MASK);
+    return new UUID(mostSigBits, leastSigBits);
+  }
+}
@@ -0,0 +1,97 @@
+package com.checkout.payment.gateway.settlement;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reconciliation of the payments left {@code PENDING}, whose outcome at the acquirer is unknown.
+ * {@code GET /actuator/pendingpayments} lists them; once the acquirer's report tells what became
+ * of one, {@code POST /actuator/pendingpayments/{id}} with {@code {"outcome": "AUTHORIZED"}} or
+ * {@code DECLINED} records it. An authorized one is settled with its window, or by the next
+ * run as an adjustment if its window is settled already (see {@link SettlementLedger}). The
+ * merchant is notified of the outcome through its webhook. The endpoint is not authenticated,
+ * so it is not exposed over HTTP unless configured.
+ */
+@Component
+@Endpoint(id = "pendingpayments")
+@Slf4j
+public class PendingPaymentsEndpoint {
+
+  private final PaymentsRepository repo;
+  private final WebhookPublisher webhookPublisher;
+  // only there with settlement enabled
+  private final ObjectProvider<SettlementLedger> ledger;
+
+  public PendingPaymentsEndpoint(PaymentsRepository repo, WebhookPublisher webhookPublisher,
+      ObjectProvider<SettlementLedger> ledger) {
+    this.repo = repo;
+    this.webhookPublisher = webhookPublisher;
+    this.ledger = ledger;
+  }
+
+  @ReadOperation
+  public List<PaymentResponse> pending() {
+    List<PaymentResponse> pending = new ArrayList<>();
+    repo.forEachWithStatus(PaymentStatus.PENDING, payment -> pending.add(toResponse(payment)));
+    pending.sort(Comparator.comparing(PaymentResponse::getId));
+    return pending;
+  }
+
+  /**
+   * @return whether the payment was pending and now has the outcome
+   */
+  @WriteOperation
+  public boolean resolve(@Selector String id, String outcome) {
+    PaymentStatus status = parseOutcome(outcome);
+    UUID paymentId;
+    try {
+      paymentId = UUID.fromString(id);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidEndpointRequestException("Invalid payment id " + id, "Invalid payment id");
+    }
+    if (!repo.resolvePending(paymentId, status)) {
+      log.warn("Payment {} is not pending, left unchanged", paymentId);
+      return false;
+    }
+    log.info("Resolved pending payment {} as {}", paymentId, status);
+    SettlementLedger settlement = ledger.getIfAvailable();
+    if (status == PaymentStatus.AUTHORIZED && settlement != null) {
+      settlement.resolved(paymentId);
+    }
+    repo.findById(paymentId)
+        .ifPresent(payment -> webhookPublisher.paymentResolved(toResponse(payment)));
+    return true;
+  }
+
+  private static PaymentResponse toResponse(Payment payment) {
+    return new PaymentResponse(payment.getId(), payment.getStatus(),
+        payment.getCardNumberLastFour(), payment.getExpiryMonth(), payment.getExpiryYear(),
+        payment.getCurrency(), payment.getAmount());
+  }
+
+  private static PaymentStatus parseOutcome(String outcome) {
+    if (PaymentStatus.AUTHORIZED.name().equals(outcome)) {
+      return PaymentStatus.AUTHORIZED;
+    }
+    if (PaymentStatus.DECLINED.name().equals(outcome)) {
+      return PaymentStatus.DECLINED;
+    }
+    throw new InvalidEndpointRequestException("Outcome must be AUTHORIZED or DECLINED",
+        "Invalid outcome");
+  }
+}
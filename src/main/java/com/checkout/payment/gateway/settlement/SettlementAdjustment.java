@@ -0,0 +1,12 @@
+package com.checkout.payment.gateway.settlement;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A payment left out of its window's settlement as pending and authorized afterwards, settled
+ * by a later run. {@code window} is the start of the window it belongs to.
+ */
+public record SettlementAdjustment(UUID paymentId, Instant window, String currency, long amount,
+    String cardNumberLastFour) {
+}
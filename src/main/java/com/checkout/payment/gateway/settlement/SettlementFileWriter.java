@@ -0,0 +1,90 @@
+package com.checkout.payment.gateway.settlement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the settlement file of one currency: a header, one {@code payment_id,amount,last_four}
+ * line per payment and a {@code total,<payments>,<amount>} trailer. Lines are collected in a
+ * direct buffer and written to the channel when it is full. The file is written next to the
+ * target and moved into place once complete, so a settlement file is never partial.
+ */
+class SettlementFileWriter implements Closeable {
+
+  static final String HEADER = "payment_id,amount,card_number_last_four\n";
+  private static final int BUFFER_BYTES = 1024 * 1024;
+
+  private final Path target;
+  private final Path tmp;
+  private final String currency;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+  private long payments;
+  private long amount;
+
+  SettlementFileWriter(Path target, String currency) throws IOException {
+    this.target = target;
+    this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+    this.currency = currency;
+    this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    put(HEADER.getBytes(StandardCharsets.US_ASCII), 0, HEADER.length());
+  }
+
+  /**
+   * Appends lines encoded by one of the parallel workers.
+   */
+  synchronized void append(byte[] lines, int length, long payments, long amount)
+      throws IOException {
+    put(lines, 0, length);
+    this.payments += payments;
+    this.amount += amount;
+  }
+
+  synchronized SettlementTotal finish() throws IOException {
+    byte[] trailer = ("total," + payments + "," + amount + "\n")
+        .getBytes(StandardCharsets.US_ASCII);
+    put(trailer, 0, trailer.length);
+    flush();
+    channel.force(true);
+    channel.close();
+    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return new SettlementTotal(currency, payments, amount, target);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      // not finished, so the settlement failed
+      channel.close();
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private void put(byte[] bytes, int offset, int length) throws IOException {
+    while (length > 0) {
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      int n = Math.min(length, buffer.remaining());
+      buffer.put(bytes, offset, n);
+      offset += n;
+      length -= n;
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,363 @@
+package com.checkout.payment.gateway.settlement;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the settlement files of the authorized payments in a time window, one file per
+ * currency. Payments of the window that are still {@code PENDING}, whose outcome at the
+ * acquirer is unknown, are not settled but listed in a {@code pending.csv} exceptions file,
+ * for reconciliation against the acquirer's report (see {@link PendingPaymentsEndpoint}).
+ * They are read first and recorded in the {@link SettlementLedger}; one authorized afterwards
+ * is listed in the {@code adjustments.csv} of the next run to be settled there.
+ *
+ * <p>Payment ids are time-ordered, so the window is a range of the primary key, which is read
+ * with a streaming cursor and never held in memory as a whole; only the pending payments, a
+ * handful, are collected. The reading thread cuts the
+ * payments into chunks that are encoded in parallel on a fork-join pool, while at most
+ * {@code maxChunksInFlight} chunks wait, so memory stays bounded however large the window is.
+ * The lines of a file are in no particular order. The scan is a plain read, so payments keep
+ * being written while it runs.
+ *
+ * <p>Every instance runs the daily job, and the {@link SettlementLedger} lets only one of them
+ * settle each window.
+ */
+@Slf4j
+public class SettlementJob implements Closeable {
+
+  private static final DateTimeFormatter BATCH_TIME =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+  static final String PENDING_FILE = "pending.csv";
+  static final String ADJUSTMENTS_FILE = "adjustments.csv";
+  private static final String PENDING_HEADER = "payment_id,currency,amount,card_number_last_four\n";
+  private static final String ADJUSTMENTS_HEADER =
+      "payment_id,window,currency,amount,card_number_last_four\n";
+  // payments per leaf task, large enough that forking costs little next to encoding
+  private static final int LEAF_SIZE = 1024;
+
+  private final PaymentsRepository repo;
+  private final SettlementLedger ledger;
+  private final Duration lease;
+  private final Path directory;
+  private final int chunkSize;
+  private final int maxChunksInFlight;
+  private final ForkJoinPool pool;
+  private final ScheduledExecutorService scheduler;
+
+  /**
+   * @param lease how long a window is left to the instance settling it, longer than a run takes
+   */
+  public SettlementJob(PaymentsRepository repo, SettlementLedger ledger, Duration lease,
+      Path directory, int parallelism, int chunkSize) {
+    this.repo = repo;
+    this.ledger = ledger;
+    this.lease = lease;
+    this.directory = directory;
+    this.chunkSize = chunkSize;
+    this.maxChunksInFlight = 2 * parallelism;
+    this.pool = new ForkJoinPool(parallelism);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "settlement");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Settles the day before every cut-off. The run waits {@code grace} past the cut-off, so
+   * payments that got their id before it but were still at the acquirer are saved by then.
+   * Each run, and a first one right away, also settles the days of the last
+   * {@code catchUpDays} that are not settled yet, e.g. as no instance was running at their
+   * cut-off or their run failed.
+   */
+  public void startDaily(LocalTime cutOff, ZoneId zone, Duration grace, int catchUpDays) {
+    ZonedDateTime now = ZonedDateTime.now(zone);
+    ZonedDateTime last = now.with(cutOff);
+    if (last.plus(grace).isAfter(now)) {
+      last = last.minusDays(1);
+    }
+    scheduleDaily(last, grace, catchUpDays, 0);
+  }
+
+  private void scheduleDaily(ZonedDateTime end, Duration grace, int catchUpDays, long delay) {
+    scheduler.schedule(() -> {
+      try {
+        settleUnsettled(end, catchUpDays);
+      } catch (Exception e) {
+        log.error("Settlement up to {} failed", end, e);
+      }
+      // scheduled one day at a time, as days are not all 24 hours long
+      ZonedDateTime next = end.plusDays(1);
+      scheduleDaily(next, grace, catchUpDays, Math.max(0, Duration.between(
+          ZonedDateTime.now(next.getZone()), next.plus(grace)).toMillis()));
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Settles the days ending at the {@code days} cut-offs up to {@code lastEnd}, oldest first,
+   * that no instance has settled or is settling.
+   */
+  public void settleUnsettled(ZonedDateTime lastEnd, int days) {
+    for (int i = days - 1; i >= 0; i--) {
+      ZonedDateTime end = lastEnd.minusDays(i);
+      settleOnce(end.minusDays(1).toInstant(), end.toInstant());
+    }
+  }
+
+  /**
+   * Settles the window unless it is settled already or another instance is settling it.
+   *
+   * @return whether this call settled it
+   */
+  public boolean settleOnce(Instant from, Instant to) {
+    long now = System.currentTimeMillis();
+    if (!ledger.tryClaim(from, to, now, now + lease.toMillis())) {
+      return false;
+    }
+    try {
+      settle(from, to);
+    } catch (IOException | RuntimeException e) {
+      ledger.release(from);
+      log.error("Settlement from {} to {} failed", from, to, e);
+      return false;
+    }
+    ledger.settled(from);
+    return true;
+  }
+
+  /**
+   * @return the totals per currency, sorted by currency
+   */
+  public List<SettlementTotal> settle(Instant from, Instant to) throws IOException {
+    long start = System.nanoTime();
+    Path batch = directory.resolve(
+        "settlement-%s-%s".formatted(BATCH_TIME.format(from), BATCH_TIME.format(to)));
+    Files.createDirectories(batch);
+
+    UUID fromId = TimeOrderedPaymentIdGenerator.firstIdAt(from.toEpochMilli());
+    UUID toId = TimeOrderedPaymentIdGenerator.firstIdAt(to.toEpochMilli());
+    Map<String, SettlementFileWriter> writers = new ConcurrentHashMap<>();
+    try {
+      // read before the authorized ones: a payment authorized in between is left out of both,
+      // and settled as an adjustment, rather than missed
+      List<Payment> pending = new ArrayList<>();
+      repo.forEachInIdRange(PaymentStatus.PENDING, fromId, toId, pending::add);
+      Set<UUID> pendingIds = new HashSet<>();
+      pending.forEach(payment -> pendingIds.add(payment.getId()));
+
+      ChunkSubmitter submitter = new ChunkSubmitter(batch, writers);
+      repo.forEachInIdRange(PaymentStatus.AUTHORIZED, fromId, toId, payment -> {
+        if (!pendingIds.contains(payment.getId())) {
+          submitter.accept(payment);
+        }
+      });
+      submitter.finish();
+      writeAtomically(batch.resolve(PENDING_FILE), PENDING_HEADER, pending,
+          payment -> payment.getId() + "," + payment.getCurrency() + ","
+              + payment.getAmount() + "," + payment.getCardNumberLastFour() + "\n");
+      ledger.leftOut(from, pending);
+      List<SettlementAdjustment> adjustments = ledger.claimAdjustments(from);
+      writeAtomically(batch.resolve(ADJUSTMENTS_FILE), ADJUSTMENTS_HEADER, adjustments,
+          adjustment -> adjustment.paymentId() + "," + BATCH_TIME.format(adjustment.window())
+              + "," + adjustment.currency() + "," + adjustment.amount() + ","
+              + adjustment.cardNumberLastFour() + "\n");
+
+      List<SettlementTotal> totals = new ArrayList<>();
+      for (SettlementFileWriter writer : writers.values()) {
+        totals.add(writer.finish());
+      }
+      totals.sort(Comparator.comparing(SettlementTotal::currency));
+      log.info("Settled {} payments from {} to {} in {} ms: {}",
+          totals.stream().mapToLong(SettlementTotal::payments).sum(), from, to,
+          (System.nanoTime() - start) / 1_000_000, totals);
+      if (!pending.isEmpty()) {
+        log.warn("{} payments from {} to {} are still pending and were not settled, see {}",
+            pending.size(), from, to, batch.resolve(PENDING_FILE));
+      }
+      if (!adjustments.isEmpty()) {
+        log.info("Settled {} payments of earlier windows authorized since, see {}",
+            adjustments.size(), batch.resolve(ADJUSTMENTS_FILE));
+      }
+      return totals;
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      for (SettlementFileWriter writer : writers.values()) {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the file also when there are no lines, so a batch without one is known to be
+   * incomplete.
+   */
+  private static <T> void writeAtomically(Path file, String header, List<T> items,
+      Function<T, String> line) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.US_ASCII)) {
+        out.write(header);
+        for (T item : items) {
+          out.write(line.apply(item));
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+    pool.shutdownNow();
+  }
+
+  /**
+   * Runs on the reading thread: collects payments into chunks and hands them to the pool.
+   */
+  private final class ChunkSubmitter implements Consumer<Payment> {
+
+    private final Path batch;
+    private final Map<String, SettlementFileWriter> writers;
+    private final Deque<ForkJoinTask<?>> inFlight = new ArrayDeque<>();
+    private List<Payment> chunk = new ArrayList<>(chunkSize);
+
+    private ChunkSubmitter(Path batch, Map<String, SettlementFileWriter> writers) {
+      this.batch = batch;
+      this.writers = writers;
+    }
+
+    @Override
+    public void accept(Payment payment) {
+      chunk.add(payment);
+      if (chunk.size() == chunkSize) {
+        submit();
+      }
+    }
+
+    private void finish() {
+      if (!chunk.isEmpty()) {
+        submit();
+      }
+      while (!inFlight.isEmpty()) {
+        inFlight.poll().join();
+      }
+    }
+
+    private void submit() {
+      if (inFlight.size() >= maxChunksInFlight) {
+        // the cursor waits for the encoders rather than buffering the whole window
+        inFlight.poll().join();
+      }
+      inFlight.add(pool.submit(new EncodeAction(chunk, 0, chunk.size(), batch, writers)));
+      chunk = new ArrayList<>(chunkSize);
+    }
+  }
+
+  private static final class EncodeAction extends RecursiveAction {
+
+    private final List<Payment> payments;
+    private final int from;
+    private final int to;
+    private final Path batch;
+    private final Map<String, SettlementFileWriter> writers;
+
+    private EncodeAction(List<Payment> payments, int from, int to, Path batch,
+        Map<String, SettlementFileWriter> writers) {
+      this.payments = payments;
+      this.from = from;
+      this.to = to;
+      this.batch = batch;
+      this.writers = writers;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > LEAF_SIZE) {
+        int mid = (from + to) >>> 1;
+        invokeAll(new EncodeAction(payments, from, mid, batch, writers),
+            new EncodeAction(payments, mid, to, batch, writers));
+        return;
+      }
+
+      Map<String, Lines> byCurrency = new HashMap<>();
+      for (int i = from; i < to; i++) {
+        Payment payment = payments.get(i);
+        byCurrency.computeIfAbsent(payment.getCurrency(), currency -> new Lines()).add(payment);
+      }
+      byCurrency.forEach((currency, lines) -> {
+        try {
+          byte[] bytes = lines.text.toString().getBytes(StandardCharsets.US_ASCII);
+          writer(currency).append(bytes, bytes.length, lines.payments, lines.amount);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+
+    private SettlementFileWriter writer(String currency) {
+      return writers.computeIfAbsent(currency, key -> {
+        try {
+          return new SettlementFileWriter(batch.resolve("settlement-" + key + ".csv"), key);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+  }
+
+  private static final class Lines {
+
+    private final StringBuilder text = new StringBuilder(64 * LEAF_SIZE);
+    private long payments;
+    private long amount;
+
+    private void add(Payment payment) {
+      text.append(payment.getId()).append(',')
+          .append(payment.getAmount()).append(',')
+          .append(payment.getCardNumberLastFour()).append('\n');
+      payments++;
+      amount += payment.getAmount();
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.checkout.payment.gateway.settlement;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Settlement windows, in a table of the gateway's database shared by all instances. A window is
+ * claimed for a lease before it is settled, so only one instance settles it, and marked settled
+ * afterwards, so it is never settled twice. A window whose instance stopped while settling it is
+ * claimed again once the lease runs out.
+ *
+ * <p>It also keeps the payments a run left out as pending, and which pending payments were
+ * authorized later. A payment that is both is settled as an adjustment by the next run, so a
+ * payment authorized after its window was settled is settled once all the same. The two are
+ * recorded independently, so it doesn't matter whether the resolution or the run comes first.
+ */
+public class SettlementLedger {
+
+  private static final RowMapper<SettlementAdjustment> ADJUSTMENT_ROW_MAPPER =
+      (rs, rowNum) -> new SettlementAdjustment(
+          UUID.fromString(rs.getString("payment_id")),
+          Instant.ofEpochMilli(rs.getLong("window_start")),
+          rs.getString("currency"),
+          rs.getLong("amount"),
+          rs.getString("card_number_last_four")
+      );
+
+  private final JdbcTemplate jdbc;
+
+  public SettlementLedger(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+    jdbc.execute("""
+        CREATE TABLE IF NOT EXISTS settlement_window (
+          window_start BIGINT PRIMARY KEY,
+          window_end BIGINT NOT NULL,
+          lease_until BIGINT NOT NULL,
+          settled BOOLEAN NOT NULL
+        )""");
+    // window_start is set once a run has left the payment out, resolved once it is authorized
+    jdbc.execute("""
+        CREATE TABLE IF NOT EXISTS settlement_left_out (
+          payment_id VARCHAR(36) PRIMARY KEY,
+          window_start BIGINT,
+          currency VARCHAR(3),
+          amount BIGINT,
+          card_number_last_four VARCHAR(4),
+          resolved BOOLEAN NOT NULL,
+          adjusted_in BIGINT
+        )""");
+  }
+
+  /**
+   * @return true if the window is now claimed by the caller until {@code leaseUntil}, false if
+   *     it is settled or another instance holds it
+   */
+  public boolean tryClaim(Instant from, Instant to, long now, long leaseUntil) {
+    try {
+      jdbc.update("""
+          INSERT INTO settlement_window (window_start, window_end, lease_until, settled)
+          VALUES (?, ?, ?, FALSE)""", from.toEpochMilli(), to.toEpochMilli(), leaseUntil);
+      return true;
+    } catch (DuplicateKeyException e) {
+      // known already, it can only be taken over once its lease has run out
+      return jdbc.update("""
+          UPDATE settlement_window SET lease_until = ?
+          WHERE window_start = ? AND settled = FALSE AND lease_until <= ?""",
+          leaseUntil, from.toEpochMilli(), now) == 1;
+    }
+  }
+
+  public void settled(Instant from) {
+    jdbc.update("UPDATE settlement_window SET settled = TRUE WHERE window_start = ?",
+        from.toEpochMilli());
+  }
+
+  /**
+   * Gives up a claim after a failed run, so the window can be claimed again right away, along
+   * with what the run recorded.
+   */
+  public void release(Instant from) {
+    jdbc.update("""
+        UPDATE settlement_left_out SET adjusted_in = NULL WHERE adjusted_in = ?""",
+        from.toEpochMilli());
+    forgetLeftOut(from);
+    jdbc.update("""
+        UPDATE settlement_window SET lease_until = 0
+        WHERE window_start = ? AND settled = FALSE""", from.toEpochMilli());
+  }
+
+  /**
+   * Records the payments the run of the window left out as pending, replacing what an earlier,
+   * failed run of it recorded.
+   */
+  public void leftOut(Instant window, List<Payment> payments) {
+    forgetLeftOut(window);
+    for (Payment payment : payments) {
+      Object[] details = {window.toEpochMilli(), payment.getCurrency(), payment.getAmount(),
+          payment.getCardNumberLastFour(), payment.getId().toString()};
+      try {
+        jdbc.update("""
+            INSERT INTO settlement_left_out
+              (window_start, currency, amount, card_number_last_four, payment_id, resolved)
+            VALUES (?, ?, ?, ?, ?, FALSE)""", details);
+      } catch (DuplicateKeyException e) {
+        // resolved already, while the run was going
+        jdbc.update("""
+            UPDATE settlement_left_out
+            SET window_start = ?, currency = ?, amount = ?, card_number_last_four = ?
+            WHERE payment_id = ?""", details);
+      }
+    }
+  }
+
+  /**
+   * Records that a pending payment was authorized.
+   */
+  public void resolved(UUID paymentId) {
+    try {
+      jdbc.update("""
+          INSERT INTO settlement_left_out (payment_id, resolved) VALUES (?, TRUE)""",
+          paymentId.toString());
+    } catch (DuplicateKeyException e) {
+      jdbc.update("""
+          UPDATE settlement_left_out SET resolved = TRUE WHERE payment_id = ?""",
+          paymentId.toString());
+    }
+  }
+
+  /**
+   * Takes the payments that were left out and authorized since, for the run of the window
+   * {@code batch} to settle.
+   */
+  public List<SettlementAdjustment> claimAdjustments(Instant batch) {
+    jdbc.update("""
+        UPDATE settlement_left_out SET adjusted_in = ?
+        WHERE window_start IS NOT NULL AND resolved = TRUE AND adjusted_in IS NULL""",
+        batch.toEpochMilli());
+    return jdbc.query("""
+        SELECT payment_id, window_start, currency, amount, card_number_last_four
+        FROM settlement_left_out WHERE adjusted_in = ?
+        ORDER BY payment_id""", ADJUSTMENT_ROW_MAPPER, batch.toEpochMilli());
+  }
+
+  public boolean isSettled(Instant from) {
+    Integer settled = jdbc.queryForObject("""
+        SELECT COUNT(*) FROM settlement_window WHERE window_start = ? AND settled = TRUE""",
+        Integer.class, from.toEpochMilli());
+    return settled != null && settled > 0;
+  }
+
+  private void forgetLeftOut(Instant window) {
+    jdbc.update("""
+        UPDATE settlement_left_out SET window_start = NULL
+        WHERE window_start = ? AND adjusted_in IS NULL""", window.toEpochMilli());
+  }
+}
@@ -0,0 +1,10 @@
+package com.checkout.payment.gateway.settlement;
+
+import java.nio.file.Path;
+
+/**
+ * What a settlement file holds: the number of payments in one currency and their total amount,
+ * in minor units.
+ */
+public record SettlementTotal(String currency, long payments, long amount, Path file) {
+}
@@ -0,0 +1,20 @@
+package com.checkout.payment.gateway.shutdown;
+
+import com.checkout.payment.gateway.shutdown.InFlightPayments.Stage;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * @param inFlightAtStart payments in flight when draining started
+ * @param unfinished payments still in flight when the drain timed out, with their stage
+ * @param refused payments refused since draining started
+ * @param elapsed time spent waiting for the payments in flight
+ */
+public record DrainReport(int inFlightAtStart, Map<UUID, Stage> unfinished, long refused,
+    Duration elapsed) {
+
+  public int drained() {
+    return Math.max(0, inFlightAtStart - unfinished.size());
+  }
+}
@@ -0,0 +1,98 @@
+package com.checkout.payment.gateway.shutdown;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Component;
+
+/**
+ * The payments being processed and how far each has got. Payments register and leave without
+ * locking; only {@link #drain} waits, for the payments in flight when it started.
+ *
+ * <p>A payment registers before it is checked for draining and {@link #drain} flags draining
+ * before it looks at the registry, so every payment is either refused or waited for.
+ */
+@Component
+public class InFlightPayments implements MeterBinder {
+
+  public enum Stage {
+    ADMITTED, ACQUIRER, PERSISTING
+  }
+
+  private final Map<UUID, Stage> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder admitted = new LongAdder();
+  private final LongAdder refused = new LongAdder();
+  private final Object drained = new Object();
+  private volatile boolean draining;
+
+  /**
+   * @return false if the instance is draining, in which case the payment must not be processed
+   */
+  public boolean tryAdmit(UUID paymentId) {
+    inFlight.put(paymentId, Stage.ADMITTED);
+    if (draining) {
+      finish(paymentId);
+      refused.increment();
+      return false;
+    }
+    admitted.increment();
+    return true;
+  }
+
+  public void advance(UUID paymentId, Stage stage) {
+    inFlight.replace(paymentId, stage);
+  }
+
+  public void finish(UUID paymentId) {
+    inFlight.remove(paymentId);
+    if (draining) {
+      synchronized (drained) {
+        drained.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Refuses new payments from now on and waits up to {@code timeout} for the ones in flight.
+   */
+  public DrainReport drain(Duration timeout) throws InterruptedException {
+    draining = true;
+    long start = System.nanoTime();
+    long deadline = start + timeout.toNanos();
+    int inFlightAtStart = inFlight.size();
+    synchronized (drained) {
+      long remaining;
+      while (!inFlight.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(drained, remaining);
+      }
+    }
+    return new DrainReport(inFlightAtStart, Map.copyOf(inFlight), refused.sum(),
+        Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  public boolean isDraining() {
+    return draining;
+  }
+
+  public int size() {
+    return inFlight.size();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("payments.in.flight", this, InFlightPayments::size)
+        .register(registry);
+    FunctionCounter.builder("payments.admitted", admitted, LongAdder::sum)
+        .register(registry);
+    FunctionCounter.builder("payments.refused.draining", refused, LongAdder::sum)
+        .description("Payments refused because the instance was shutting down")
+        .register(registry);
+  }
+}
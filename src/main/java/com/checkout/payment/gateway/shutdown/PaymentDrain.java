@@ -0,0 +1,63 @@
+package com.checkout.payment.gateway.shutdown;
+
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drains the payments in flight when the application shuts down, before the web server's
+ * graceful shutdown, so new payments are answered with 503 straight away while the ones already
+ * at the acquirer get to finish and be saved.
+ *
+ * <p>The graceful shutdown stops in the last lifecycle phase, {@code Integer.MAX_VALUE}, which no
+ * phase can come before when stopping. The drain runs on the {@link ContextClosedEvent} instead,
+ * which is published before any lifecycle phase is stopped.
+ *
+ * <p>Payments still unfinished at the timeout keep their open intent, and are saved as
+ * {@code PENDING} by the next start.
+ */
+@Component
+@Slf4j
+public class PaymentDrain {
+
+  private final InFlightPayments inFlightPayments;
+  private final Duration timeout;
+  private final ApplicationContext context;
+
+  public PaymentDrain(InFlightPayments inFlightPayments,
+      @Value("${payments.shutdown.drain-timeout:20s}") Duration timeout,
+      ApplicationContext context) {
+    this.inFlightPayments = inFlightPayments;
+    this.timeout = timeout;
+    this.context = context;
+  }
+
+  @EventListener
+  public void drain(ContextClosedEvent event) {
+    if (event.getApplicationContext() != context) {
+      // a child context, e.g. the management server's, is closing
+      return;
+    }
+    log.info("Draining {} payments in flight", inFlightPayments.size());
+    try {
+      DrainReport report = inFlightPayments.drain(timeout);
+      if (report.unfinished().isEmpty()) {
+        log.info("Drained {} payments in {} ms, refused {}", report.drained(),
+            report.elapsed().toMillis(), report.refused());
+      } else {
+        log.warn("Drained {} payments in {} ms, refused {}; {} still in flight are left to the"
+                + " intent log recovery on the next start: {}", report.drained(),
+            report.elapsed().toMillis(), report.refused(), report.unfinished().size(),
+            report.unfinished());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while draining payments, {} still in flight",
+          inFlightPayments.size());
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.checkout.payment.gateway.throttling;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Limits payment attempts per card, and failed attempts per merchant and BIN (the first six
+ * digits), over a sliding window, to stop card testing before it reaches the acquirer. A BIN
+ * carries the legitimate traffic of a whole issuer product, so only what card testing produces
+ * there counts against it: attempts declined by the acquirer, and each card that goes over its
+ * own limit, once. Retrying a single card therefore can't block its BIN, and the BIN counts are
+ * kept per merchant, so one merchant under attack, or with many declines, doesn't block the BIN
+ * for the others. Cards are only ever seen as a keyed hash (HMAC-SHA256), so the counters hold
+ * nothing that could be matched against a list of card numbers, and are counted in
+ * {@link SlidingCountMinSketch}es of fixed size.
+ */
+public class CardVelocityLimiter {
+
+  private static final String HMAC = "HmacSHA256";
+  private static final int BIN_LENGTH = 6;
+
+  private final ThreadLocal<Mac> macs;
+  private final int maxAttemptsPerCard;
+  private final int maxFailuresPerBin;
+  private final SlidingCountMinSketch cards;
+  private final SlidingCountMinSketch bins;
+
+  public CardVelocityLimiter(byte[] hashKey, int maxAttemptsPerCard, int maxFailuresPerBin,
+      Duration window, int buckets, int cardSketchWidth, int binSketchWidth, LongSupplier clock) {
+    SecretKeySpec key = new SecretKeySpec(hashKey, HMAC);
+    this.macs = ThreadLocal.withInitial(() -> {
+      try {
+        Mac mac = Mac.getInstance(HMAC);
+        mac.init(key);
+        return mac;
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("HmacSHA256 is not available", e);
+      }
+    });
+    this.maxAttemptsPerCard = maxAttemptsPerCard;
+    this.maxFailuresPerBin = maxFailuresPerBin;
+    this.cards = new SlidingCountMinSketch(cardSketchWidth, window, buckets, clock);
+    this.bins = new SlidingCountMinSketch(binSketchWidth, window, buckets, clock);
+  }
+
+  /**
+   * Records an attempt with the card.
+   *
+   * @return false if the card is over its limit, counting this attempt, or its BIN has had too
+   *     many failed attempts at this merchant
+   */
+  public boolean tryAttempt(String merchant, String cardNumber) {
+    ByteBuffer binHash = binHash(merchant, cardNumber);
+    if (bins.estimate(binHash.getLong(0), binHash.getLong(8)) >= maxFailuresPerBin) {
+      // not counted as a failure, so the BIN opens again once its failures leave the window
+      return false;
+    }
+    ByteBuffer cardHash = hash(cardNumber);
+    int attempts = cards.addAndEstimate(cardHash.getLong(0), cardHash.getLong(8));
+    if (attempts > maxAttemptsPerCard) {
+      if (attempts == maxAttemptsPerCard + 1) {
+        // only the attempt that takes the card over its limit is a failure of the BIN
+        bins.addAndEstimate(binHash.getLong(0), binHash.getLong(8));
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Counts an attempt with the card that the acquirer declined against its BIN at the merchant.
+   */
+  public void recordDecline(String merchant, String cardNumber) {
+    ByteBuffer binHash = binHash(merchant, cardNumber);
+    bins.addAndEstimate(binHash.getLong(0), binHash.getLong(8));
+  }
+
+  public long sizeInBytes() {
+    return cards.sizeInBytes() + bins.sizeInBytes();
+  }
+
+  private ByteBuffer binHash(String merchant, String cardNumber) {
+    return hash(merchant + ':'
+        + cardNumber.substring(0, Math.min(BIN_LENGTH, cardNumber.length())));
+  }
+
+  private ByteBuffer hash(String value) {
+    return ByteBuffer.wrap(macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8)));
+  }
+}
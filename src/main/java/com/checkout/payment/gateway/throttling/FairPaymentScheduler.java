@@ -0,0 +1,147 @@
+package com.checkout.payment.gateway.throttling;
+
+import com.checkout.payment.gateway.exception.RateLimitExceededException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Limits how many payments are processed at once and, when that limit is reached, admits
+ * waiting requests in weighted fair order (start-time fair queuing): each merchant gets a share
+ * of the slots proportional to its weight, however many requests it has queued. Requests that
+ * wait longer than the maximum queue wait are rejected.
+ *
+ * <p>A queued request is tagged with a virtual start time, the later of the virtual clock and
+ * the finish tag of the merchant's previous request, and finishes {@code 1 / weight} after it.
+ * Slots go to the smallest start tag, and the virtual clock moves to the start tag of the
+ * request admitted, so a merchant arriving late is served next to the queued ones rather than
+ * after them.
+ */
+public class FairPaymentScheduler {
+
+  private static final int MAX_TRACKED_FINISH_TAGS = 10_000;
+
+  private static final class Waiter {
+    private final double startTag;
+    private final double finishTag;
+    private final long sequence;
+    private final Condition admittedSignal;
+    private boolean admitted;
+
+    private Waiter(double startTag, double finishTag, long sequence, Condition admittedSignal) {
+      this.startTag = startTag;
+      this.finishTag = finishTag;
+      this.sequence = sequence;
+      this.admittedSignal = admittedSignal;
+    }
+  }
+
+  private final int maxConcurrent;
+  private final long maxWaitNanos;
+  private final ToDoubleFunction<String> weights;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final PriorityQueue<Waiter> waiting = new PriorityQueue<>(
+      Comparator.comparingDouble((Waiter waiter) -> waiter.startTag)
+          .thenComparingLong(waiter -> waiter.sequence));
+  private final Map<String, Double> lastFinishTags = new HashMap<>();
+  private int inFlight;
+  private double virtualTime;
+  private long sequence;
+
+  public FairPaymentScheduler(int maxConcurrent, long maxWaitMillis,
+      ToDoubleFunction<String> weights) {
+    this.maxConcurrent = maxConcurrent;
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    this.weights = weights;
+  }
+
+  public <T> T run(String merchant, Supplier<T> task) {
+    acquire(merchant);
+    try {
+      return task.get();
+    } finally {
+      release();
+    }
+  }
+
+  public int inFlight() {
+    lock.lock();
+    try {
+      return inFlight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void acquire(String merchant) {
+    lock.lock();
+    try {
+      if (inFlight < maxConcurrent && waiting.isEmpty()) {
+        inFlight++;
+        return;
+      }
+
+      double startTag = Math.max(virtualTime, lastFinishTags.getOrDefault(merchant, 0.0));
+      double finishTag = startTag + 1.0 / weights.applyAsDouble(merchant);
+      lastFinishTags.put(merchant, finishTag);
+      Waiter waiter = new Waiter(startTag, finishTag, sequence++, lock.newCondition());
+      waiting.add(waiter);
+
+      long remainingNanos = maxWaitNanos;
+      try {
+        while (!waiter.admitted) {
+          if (remainingNanos <= 0) {
+            waiting.remove(waiter);
+            throw new RateLimitExceededException("Too many payments in progress",
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos));
+          }
+          remainingNanos = waiter.admittedSignal.awaitNanos(remainingNanos);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        if (waiter.admitted) {
+          // the slot was already handed to us, pass it on
+          releaseLocked();
+        } else {
+          waiting.remove(waiter);
+        }
+        throw new RateLimitExceededException("Interrupted while waiting for a payment slot", 0);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      releaseLocked();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void releaseLocked() {
+    Waiter next = waiting.poll();
+    if (next == null) {
+      inFlight--;
+      return;
+    }
+    // the slot goes straight to the waiter with the smallest start tag
+    virtualTime = next.startTag;
+    next.admitted = true;
+    next.admittedSignal.signal();
+
+    if (lastFinishTags.size() > MAX_TRACKED_FINISH_TAGS) {
+      // tags behind the virtual clock no longer affect scheduling
+      lastFinishTags.values().removeIf(tag -> tag <= virtualTime);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.checkout.payment.gateway.throttling;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per merchant, implemented as GCRA: the whole state of a bucket is the theoretical
+ * arrival time of the next request, kept in a single {@link AtomicLong} and updated with CAS, so
+ * merchants never contend on a lock.
+ *
+ * <p>The api key is not authenticated, so a client could send a new key with every request to
+ * dodge its limit. When the merchants' keys are configured, every other key shares one bucket.
+ * Otherwise each key gets its own bucket while there is room; keys seen once the tracked
+ * merchants are at their limit share that bucket instead, so they can't push out the merchants
+ * already tracked. Buckets that have fully refilled carry no information and are evicted in the
+ * background.
+ */
+public class MerchantRateLimiter implements AutoCloseable {
+
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final int maxTrackedMerchants;
+  private final Set<String> knownMerchants;
+  private final LongSupplier nanoClock;
+  private final ConcurrentHashMap<String, AtomicLong> theoreticalArrival = new ConcurrentHashMap<>();
+  private final AtomicLong unknownMerchants;
+  private final ScheduledExecutorService eviction;
+
+  public MerchantRateLimiter(double permitsPerSecond, int burst, int maxTrackedMerchants,
+      Set<String> knownMerchants, LongSupplier nanoClock) {
+    this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    this.burstToleranceNanos = emissionIntervalNanos * (Math.max(1, burst) - 1);
+    this.maxTrackedMerchants = maxTrackedMerchants;
+    this.knownMerchants = Set.copyOf(knownMerchants);
+    this.nanoClock = nanoClock;
+    this.unknownMerchants = new AtomicLong(nanoClock.getAsLong());
+    this.eviction = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "merchant-rate-limit-eviction");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void startEviction(Duration interval) {
+    eviction.scheduleWithFixedDelay(this::evictRefilled, interval.toMillis(),
+        interval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return 0 if the merchant may proceed, otherwise the nanos until its next request would be
+   *     allowed
+   */
+  public long tryAcquire(String merchant) {
+    long now = nanoClock.getAsLong();
+    return tryAcquire(bucket(merchant, now), now);
+  }
+
+  public int trackedMerchants() {
+    return theoreticalArrival.size();
+  }
+
+  /**
+   * Drops the buckets that have fully refilled, which behave like new ones.
+   */
+  public void evictRefilled() {
+    long now = nanoClock.getAsLong();
+    theoreticalArrival.values().removeIf(tat -> tat.get() <= now);
+  }
+
+  @Override
+  public void close() {
+    eviction.shutdownNow();
+  }
+
+  private AtomicLong bucket(String merchant, long now) {
+    if (!knownMerchants.isEmpty() && !knownMerchants.contains(merchant)) {
+      return unknownMerchants;
+    }
+    AtomicLong tat = theoreticalArrival.get(merchant);
+    if (tat != null) {
+      return tat;
+    }
+    if (theoreticalArrival.size() >= maxTrackedMerchants) {
+      return unknownMerchants;
+    }
+    return theoreticalArrival.computeIfAbsent(merchant, key -> new AtomicLong(now));
+  }
+
+  private long tryAcquire(AtomicLong tat, long now) {
+    while (true) {
+      long current = tat.get();
+      long base = Math.max(current, now);
+      long waitNanos = base - now - burstToleranceNanos;
+      if (waitNanos > 0) {
+        return waitNanos;
+      }
+      if (tat.compareAndSet(current, base + emissionIntervalNanos)) {
+        return 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package com.checkout.payment.gateway.throttling;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a share of the calls made, across all callers. Every first attempt deposits
+ * {@code retryRatio} of a retry and every retry withdraws a whole one, so when a dependency is
+ * down retries add at most that share to its load instead of multiplying it.
+ */
+public class RetryBudget {
+
+  // balance in thousandths of a retry
+  private static final long SCALE = 1000;
+
+  private final long depositPerCall;
+  private final long maxBalance;
+  private final AtomicLong balance;
+
+  public RetryBudget(double retryRatio, int maxRetries) {
+    this.depositPerCall = Math.round(retryRatio * SCALE);
+    this.maxBalance = maxRetries * SCALE;
+    this.balance = new AtomicLong(maxBalance);
+  }
+
+  public void recordCall() {
+    balance.accumulateAndGet(depositPerCall, (current, deposit) ->
+        Math.min(maxBalance, current + deposit));
+  }
+
+  public boolean tryAcquire() {
+    while (true) {
+      long current = balance.get();
+      if (current < SCALE) {
+        return false;
+      }
+      if (balance.compareAndSet(current, current - SCALE)) {
+        return true;
+      }
+    }
+  }
+
+  public double available() {
+    return (double) balance.get() / SCALE;
+  }
+}
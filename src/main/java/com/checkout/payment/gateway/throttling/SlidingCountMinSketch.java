@@ -0,0 +1,120 @@
+package com.checkout.payment.gateway.throttling;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-min sketch over a sliding time window. The window is split into buckets, each a sketch
+ * of {@value #DEPTH} rows of {@code width} counters; the estimate for a key is the smallest of
+ * its row counters summed over the buckets still in the window. Memory is fixed, no matter how
+ * many keys are seen, and counts can only be over-estimated, by colliding keys. The width should
+ * be well above the number of distinct keys expected in a window, since the over-estimate grows
+ * with their ratio.
+ *
+ * <p>A bucket is cleared when it is reused for a new period. Increments racing with that are
+ * not coordinated, which costs at most a few counts at period boundaries.
+ */
+public class SlidingCountMinSketch {
+
+  private static final int DEPTH = 4;
+
+  private final int mask;
+  private final long bucketMillis;
+  private final AtomicIntegerArray[] buckets;
+  private final AtomicLongArray bucketPeriods;
+  private final LongSupplier clock;
+
+  /**
+   * @param width counters per row, rounded up to a power of two
+   */
+  public SlidingCountMinSketch(int width, Duration window, int bucketCount, LongSupplier clock) {
+    int roundedWidth = Integer.highestOneBit(Math.max(2, width) - 1) << 1;
+    this.mask = roundedWidth - 1;
+    this.bucketMillis = Math.max(1, window.toMillis() / bucketCount);
+    this.buckets = new AtomicIntegerArray[bucketCount];
+    this.bucketPeriods = new AtomicLongArray(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      buckets[i] = new AtomicIntegerArray(DEPTH * roundedWidth);
+      bucketPeriods.set(i, Long.MIN_VALUE);
+    }
+    this.clock = clock;
+  }
+
+  /**
+   * Counts one occurrence of the key identified by two independent 64 bit hashes.
+   *
+   * @return the estimated occurrences within the window, including this one
+   */
+  public int addAndEstimate(long hash1, long hash2) {
+    long period = clock.getAsLong() / bucketMillis;
+    int current = Math.floorMod(period, buckets.length);
+    AtomicIntegerArray currentBucket = bucketFor(period, current);
+
+    int[] indexes = new int[DEPTH];
+    int[] older = new int[DEPTH];
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      indexes[row] = index(row, hash1, hash2);
+      for (int i = 0; i < buckets.length; i++) {
+        if (i != current && bucketPeriods.get(i) > period - buckets.length) {
+          older[row] += buckets[i].get(indexes[row]);
+        }
+      }
+      estimate = Math.min(estimate, older[row] + currentBucket.get(indexes[row]));
+    }
+    estimate++;
+
+    // conservative update: raise each row only as far as needed for it to still count at least
+    // the new estimate, which keeps collisions from inflating the other keys' counts
+    for (int row = 0; row < DEPTH; row++) {
+      int floor = estimate - older[row];
+      currentBucket.accumulateAndGet(indexes[row], floor, Math::max);
+    }
+    return estimate;
+  }
+
+  /**
+   * @return the estimated occurrences of the key within the window, without counting one
+   */
+  public int estimate(long hash1, long hash2) {
+    long period = clock.getAsLong() / bucketMillis;
+    int estimate = Integer.MAX_VALUE;
+    for (int row = 0; row < DEPTH; row++) {
+      int index = index(row, hash1, hash2);
+      int count = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        if (bucketPeriods.get(i) > period - buckets.length) {
+          count += buckets[i].get(index);
+        }
+      }
+      estimate = Math.min(estimate, count);
+    }
+    return estimate;
+  }
+
+  public long sizeInBytes() {
+    return (long) buckets.length * buckets[0].length() * Integer.BYTES;
+  }
+
+  private int index(int row, long hash1, long hash2) {
+    // Kirsch-Mitzenmacher: the rows' indexes are derived from the same two hashes
+    return row * (mask + 1) + (int) ((hash1 + row * hash2) & mask);
+  }
+
+  private AtomicIntegerArray bucketFor(long period, int index) {
+    if (bucketPeriods.get(index) != period) {
+      synchronized (buckets[index]) {
+        if (bucketPeriods.get(index) != period) {
+          AtomicIntegerArray bucket = buckets[index];
+          for (int i = 0; i < bucket.length(); i++) {
+            bucket.set(i, 0);
+          }
+          bucketPeriods.set(index, period);
+        }
+      }
+    }
+    return buckets[index];
+  }
+}
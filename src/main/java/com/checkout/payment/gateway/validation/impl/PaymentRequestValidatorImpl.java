@@ -1,5 +1,7 @@
 package com.checkout.payment.gateway.validation.impl;
 
+import com.checkout.payment.gateway.bin.BinRange;
+import com.checkout.payment.gateway.bin.BinTableRegistry;
 import com.checkout.payment.gateway.exception.InvalidRequestException;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import java.time.YearMonth;
@@ -10,6 +12,12 @@ import org.springframework.stereotype.Component;
 @Component
 public class PaymentRequestValidatorImpl implements PaymentRequestValidator {
 
+  private final BinTableRegistry binTable;
+
+  public PaymentRequestValidatorImpl(BinTableRegistry binTable) {
+    this.binTable = binTable;
+  }
+
   @Override
   public void validate(PaymentRequest req) {
     if (req == null) {
@@ -21,6 +29,13 @@ public class PaymentRequestValidatorImpl implements PaymentRequestValidator {
       throw new InvalidRequestException("Invalid card number");
     }
 
+    if (binTable.isEnabled()) {
+      BinRange range = binTable.lookup(req.getCardNumber());
+      if (range == null || !range.supported()) {
+        throw new InvalidRequestException("Card range not supported");
+      }
+    }
+
     if (req.getCvv() == null
         || !req.getCvv().matches("\\d{3,4}")) {
       throw new InvalidRequestException("Invalid CVV");
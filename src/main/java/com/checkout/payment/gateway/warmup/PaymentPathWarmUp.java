@@ -0,0 +1,263 @@
+package com.checkout.payment.gateway.warmup;
+
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import com.checkout.payment.gateway.cache.PaymentResponseCache;
+import com.checkout.payment.gateway.configuration.AcquirerProperties;
+import com.checkout.payment.gateway.exception.NotFoundException;
+import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
+import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.Deadline;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.PaymentIdGenerator;
+import com.checkout.payment.gateway.service.impl.BankHttpClient;
+import com.checkout.payment.gateway.service.impl.PaymentGatewayServiceImpl;
+import com.checkout.payment.gateway.shutdown.InFlightPayments;
+import com.checkout.payment.gateway.throttling.CardVelocityLimiter;
+import com.checkout.payment.gateway.throttling.RetryBudget;
+import com.checkout.payment.gateway.validation.PaymentRequestValidator;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drives synthetic payments through the payment path before the instance takes traffic, so the
+ * JIT has compiled it by the time the first real payment arrives. It runs as a lifecycle phase
+ * that starts before the web server's, so the server only starts listening once it is done.
+ * The per-payment loggers are turned down meanwhile, which can't hide the logs of a real
+ * payment, as none can arrive yet.
+ *
+ * <p>The payments go from JSON through the real validator, id generator and service code, and a
+ * {@link BankHttpClient} whose WebClient answers from memory. They are stored in a throwaway
+ * repository and never reach the acquirer or the real storage.
+ */
+@Component
+@ConditionalOnProperty(value = "payments.warm-up.enabled", havingValue = "true")
+@Slf4j
+public class PaymentPathWarmUp implements SmartLifecycle {
+
+  // the web server starts listening in the phase below the one it shuts down gracefully in
+  static final int PHASE = WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2;
+
+  private static final String ACQUIRER_RESPONSE =
+      "{\"authorized\":true,\"authorization_code\":\"warm-up\"}";
+  private static final String WARM_UP_MERCHANT = "warm-up";
+  private static final Duration PAYMENT_TIMEOUT = Duration.ofSeconds(10);
+  private static final List<Class<?>> PER_PAYMENT_LOGGERS =
+      List.of(PaymentGatewayServiceImpl.class, BankHttpClient.class);
+
+  private final WebClient.Builder webClientBuilder;
+  private final PaymentRequestValidator validator;
+  private final BinTableRegistry binTable;
+  private final PaymentIdGenerator idGenerator;
+  private final ObjectMapper objectMapper;
+  private final LoggingSystem loggingSystem;
+  private final int iterations;
+  private final Duration maxDuration;
+  private volatile boolean running;
+
+  public PaymentPathWarmUp(
+      WebClient.Builder webClientBuilder,
+      PaymentRequestValidator validator,
+      BinTableRegistry binTable,
+      PaymentIdGenerator idGenerator,
+      ObjectMapper objectMapper,
+      LoggingSystem loggingSystem,
+      @Value("${payments.warm-up.iterations:10000}") int iterations,
+      @Value("${payments.warm-up.max-duration:30s}") Duration maxDuration) {
+    this.webClientBuilder = webClientBuilder;
+    this.validator = validator;
+    this.binTable = binTable;
+    this.idGenerator = idGenerator;
+    this.objectMapper = objectMapper;
+    this.loggingSystem = loggingSystem;
+    this.iterations = iterations;
+    this.maxDuration = maxDuration;
+  }
+
+  @Override
+  public void start() {
+    long start = System.nanoTime();
+    int payments;
+    try {
+      payments = warmUp();
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException("Failed to read a synthetic payment request", e);
+    }
+    running = true;
+    log.info("Warmed up the payment path with {} synthetic payments in {} ms",
+        payments, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public int getPhase() {
+    return PHASE;
+  }
+
+  /**
+   * @return the number of synthetic payments processed
+   */
+  public int warmUp() throws JsonProcessingException {
+    InMemoryPayments repo = new InMemoryPayments();
+    PaymentIdFilter idFilter = PaymentIdFilter.builder(repo)
+        .expectedInsertions(iterations)
+        .rebuildThreads(1)
+        .singleInstance(true)
+        .build();
+    idFilter.rebuild();
+    PaymentGatewayService service = new PaymentGatewayServiceImpl(
+        repo, inMemoryAcquirer(), validator, idGenerator, idFilter, PaymentIntentLog.noOp(),
+        unlimitedVelocity(), WebhookPublisher.noOp(),
+        // its own cache, so synthetic payments don't push out real ones
+        new PaymentResponseCache(objectMapper, DataSize.ofMegabytes(1)), new InFlightPayments());
+
+    long deadline = System.nanoTime() + maxDuration.toNanos();
+    int expiryYear = YearMonth.now().getYear() + 2;
+    Map<String, LogLevel> logLevels = quietPerPaymentLogging();
+    int done = 0;
+    try {
+      while (done < iterations && System.nanoTime() < deadline) {
+        PaymentRequest request = objectMapper.readValue(
+            syntheticRequest(done, expiryYear), PaymentRequest.class);
+        PaymentResponse response =
+            service.processPayment(WARM_UP_MERCHANT, request, Deadline.after(PAYMENT_TIMEOUT));
+        try {
+          // rejected payments are not stored, which exercises the unknown id path
+          service.getSerializedPaymentById(response.getId());
+        } catch (NotFoundException expected) {
+          // answered by the id filter, as for a real unknown id
+        }
+        done++;
+      }
+    } finally {
+      logLevels.forEach(loggingSystem::setLogLevel);
+    }
+    return done;
+  }
+
+  private static String syntheticRequest(int i, int expiryYear) {
+    // every tenth payment is rejected by the validator
+    String currency = i % 10 == 9 ? "JPY" : List.of("GBP", "USD", "EUR").get(i % 3);
+    return """
+        {"cardNumber":"2222405343248%03d","expiryMonth":%d,"expiryYear":%d,\
+        "currency":"%s","amount":%d,"cvv":"123"}""".formatted(
+        i % 1000, i % 12 + 1, expiryYear, currency, 100 + i);
+  }
+
+  private BankClient inMemoryAcquirer() {
+    WebClient.Builder builder = webClientBuilder.clone()
+        .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+            .body(ACQUIRER_RESPONSE)
+            .build()));
+    AcquirerProperties properties = new AcquirerProperties();
+    properties.setUrl("http://acquirer.warm-up");
+    return new BankHttpClient(builder, properties, new RetryBudget(0, 0), binTable);
+  }
+
+  private static CardVelocityLimiter unlimitedVelocity() {
+    // the synthetic cards repeat far more often than real ones may
+    return new CardVelocityLimiter(new byte[32], Integer.MAX_VALUE, Integer.MAX_VALUE,
+        Duration.ofMinutes(1), 1, 1024, 1024, System::currentTimeMillis);
+  }
+
+  /**
+   * @return the previously configured levels, to restore once the warm-up is done
+   */
+  private Map<String, LogLevel> quietPerPaymentLogging() {
+    Map<String, LogLevel> previous = new HashMap<>();
+    for (Class<?> type : PER_PAYMENT_LOGGERS) {
+      LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(type.getName());
+      previous.put(type.getName(),
+          configuration == null ? null : configuration.getConfiguredLevel());
+      loggingSystem.setLogLevel(type.getName(), LogLevel.ERROR);
+    }
+    return previous;
+  }
+
+  private static class InMemoryPayments implements PaymentsRepository {
+
+    private final Map<UUID, Payment> payments = new ConcurrentHashMap<>();
+
+    @Override
+    public Payment save(Payment payment) {
+      payments.put(payment.getId(), payment);
+      return payment;
+    }
+
+    @Override
+    public Optional<Payment> findById(UUID id) {
+      return Optional.ofNullable(payments.get(id));
+    }
+
+    @Override
+    public List<Payment> findAll() {
+      return List.copyOf(payments.values());
+    }
+
+    @Override
+    public void forEachId(Consumer<UUID> action) {
+      payments.keySet().forEach(action);
+    }
+
+    @Override
+    public void forEachInIdRange(PaymentStatus status, UUID fromId, UUID toId,
+        Consumer<Payment> action) {
+      payments.values().stream()
+          .filter(payment -> payment.getStatus() == status
+              && payment.getId().compareTo(fromId) >= 0 && payment.getId().compareTo(toId) < 0)
+          .forEach(action);
+    }
+
+    @Override
+    public void forEachWithStatus(PaymentStatus status, Consumer<Payment> action) {
+      payments.values().stream().filter(payment -> payment.getStatus() == status).forEach(action);
+    }
+
+    @Override
+    public boolean resolvePending(UUID id, PaymentStatus outcome) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Queues events in the {@link WebhookOutbox} for merchants that have a webhook endpoint; the
+ * {@link WebhookDispatcher} delivers them. Payments carry no merchant, so the merchant of a
+ * pending payment is kept in the outbox until the payment is resolved.
+ */
+@Slf4j
+public class OutboxWebhookPublisher implements WebhookPublisher {
+
+  private final WebhookOutbox outbox;
+  private final Map<String, String> endpoints;
+  private final ObjectMapper objectMapper;
+  private final LongSupplier clock;
+
+  public OutboxWebhookPublisher(WebhookOutbox outbox, Map<String, String> endpoints,
+      ObjectMapper objectMapper, LongSupplier clock) {
+    this.outbox = outbox;
+    this.endpoints = endpoints;
+    this.objectMapper = objectMapper;
+    this.clock = clock;
+  }
+
+  @Override
+  public void paymentProcessed(String merchant, PaymentResponse payment) {
+    if (!endpoints.containsKey(merchant)) {
+      return;
+    }
+    if (payment.getStatus() == PaymentStatus.PENDING) {
+      try {
+        outbox.rememberPending(payment.getId(), merchant);
+      } catch (DataAccessException e) {
+        log.error("Failed to keep the merchant of pending payment id={}, its resolution won't be"
+            + " sent", payment.getId(), e);
+      }
+    }
+    enqueue(merchant, WebhookEvent.PAYMENT_PROCESSED, payment);
+  }
+
+  @Override
+  public void paymentResolved(PaymentResponse payment) {
+    String merchant;
+    try {
+      merchant = outbox.takePendingMerchant(payment.getId());
+    } catch (DataAccessException e) {
+      log.error("Failed to find the merchant of resolved payment id={}", payment.getId(), e);
+      return;
+    }
+    if (merchant == null) {
+      // the merchant has no endpoint, or the payment was recovered from the intent log
+      log.info("No merchant to notify of resolved payment id={}", payment.getId());
+      return;
+    }
+    enqueue(merchant, WebhookEvent.PAYMENT_RESOLVED, payment);
+  }
+
+  private void enqueue(String merchant, String type, PaymentResponse payment) {
+    try {
+      String payload = objectMapper.writeValueAsString(new WebhookEvent(type, payment));
+      outbox.enqueue(merchant, payload, clock.getAsLong());
+    } catch (JsonProcessingException | DataAccessException e) {
+      // the payment itself is done, the merchant can still look it up
+      log.error("Failed to queue webhook for payment id={}", payment.getId(), e);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.checkout.payment.gateway.configuration.WebhookProperties;
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.checkout.payment.gateway.webhook.WebhookOutbox.Event;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Delivers the events in the {@link WebhookOutbox}. Due events are polled, grouped by merchant
+ * and posted in batches as {@code {"events": [...]}} through a non-blocking {@link WebClient},
+ * whose connection pool keeps connections to each endpoint open between batches. Each merchant
+ * has at most {@code maxConcurrentPerMerchant} batches in flight, so a slow endpoint only holds
+ * up its own events. Failed batches are retried with exponential backoff until
+ * {@code maxAttempts}.
+ */
+@Slf4j
+public class WebhookDispatcher implements Closeable {
+
+  private final WebhookOutbox outbox;
+  private final WebClient webClient;
+  private final Map<String, String> endpoints;
+  private final int batchSize;
+  private final int maxEventsPerPoll;
+  private final int maxConcurrentPerMerchant;
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final Duration requestTimeout;
+  private final LongSupplier clock;
+  private final ConcurrentHashMap<String, Semaphore> inFlight = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService poller;
+
+  public WebhookDispatcher(WebhookOutbox outbox, WebClient.Builder builder,
+      WebhookProperties properties, LongSupplier clock) {
+    this.outbox = outbox;
+    this.webClient = builder.build();
+    this.endpoints = MerchantIds.byMerchant(properties.getEndpoints());
+    this.batchSize = properties.getBatchSize();
+    this.maxEventsPerPoll = properties.getMaxEventsPerPoll();
+    this.maxConcurrentPerMerchant = properties.getMaxConcurrentPerMerchant();
+    this.maxAttempts = properties.getMaxAttempts();
+    this.initialBackoffMillis = properties.getInitialBackoff().toMillis();
+    this.maxBackoffMillis = properties.getMaxBackoff().toMillis();
+    this.requestTimeout = properties.getRequestTimeout();
+    this.clock = clock;
+    this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "webhook-dispatcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void start(Duration pollInterval) {
+    poller.scheduleWithFixedDelay(() -> {
+      try {
+        dispatchDue();
+      } catch (Exception e) {
+        log.error("Webhook dispatch failed", e);
+      }
+    }, pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Sends the events that are due, without waiting for the responses.
+   *
+   * @return the number of batches sent
+   */
+  public int dispatchDue() {
+    long now = clock.getAsLong();
+    // a batch that got no answer within twice the timeout is considered lost
+    List<Event> due = outbox.claimDue(now, now + 2 * requestTimeout.toMillis(), maxEventsPerPoll);
+    Map<String, List<Event>> byMerchant = due.stream()
+        .collect(Collectors.groupingBy(Event::merchant, LinkedHashMap::new, Collectors.toList()));
+
+    int sent = 0;
+    List<Event> waiting = new ArrayList<>();
+    for (Map.Entry<String, List<Event>> merchantEvents : byMerchant.entrySet()) {
+      String merchant = merchantEvents.getKey();
+      List<Event> events = merchantEvents.getValue();
+      String url = endpoints.get(merchant);
+      if (url == null) {
+        log.warn("No webhook endpoint for merchant, dropping {} events", events.size());
+        outbox.failed(events);
+        continue;
+      }
+
+      Semaphore permits = inFlight.computeIfAbsent(merchant,
+          key -> new Semaphore(maxConcurrentPerMerchant));
+      for (int from = 0; from < events.size(); from += batchSize) {
+        if (!permits.tryAcquire()) {
+          waiting.addAll(events.subList(from, events.size()));
+          break;
+        }
+        send(url, List.copyOf(events.subList(from, Math.min(from + batchSize, events.size()))),
+            permits);
+        sent++;
+      }
+    }
+    if (!waiting.isEmpty()) {
+      outbox.release(waiting, now);
+    }
+    return sent;
+  }
+
+  private void send(String url, List<Event> batch, Semaphore permits) {
+    webClient.post()
+        .uri(url)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(body(batch))
+        .retrieve()
+        .toBodilessEntity()
+        .timeout(requestTimeout)
+        // the outcome is recorded with blocking JDBC calls, which must stay off the event loop
+        .publishOn(Schedulers.boundedElastic())
+        .doFinally(signal -> permits.release())
+        .subscribe(
+            response -> outbox.delivered(batch),
+            error -> retryLater(url, batch, error));
+  }
+
+  private void retryLater(String url, List<Event> batch, Throwable error) {
+    log.warn("Webhook delivery of {} events to {} failed: {}", batch.size(), url,
+        error.toString());
+    long now = clock.getAsLong();
+    List<Event> exhausted = new ArrayList<>();
+    for (Event event : batch) {
+      if (event.attempts() + 1 >= maxAttempts) {
+        exhausted.add(event);
+      } else {
+        outbox.retryAt(event, now + backoffMillis(event.attempts()));
+      }
+    }
+    if (!exhausted.isEmpty()) {
+      log.error("Giving up on {} webhook events to {} after {} attempts", exhausted.size(), url,
+          maxAttempts);
+      outbox.failed(exhausted);
+    }
+  }
+
+  private long backoffMillis(int attempts) {
+    long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts, 20));
+    // half fixed, half random, so endpoints that come back aren't hit by all events at once
+    return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+  }
+
+  private static String body(List<Event> batch) {
+    // the payloads are stored as JSON already
+    StringJoiner events = new StringJoiner(",", "{\"events\":[", "]}");
+    batch.forEach(event -> events.add(event.payload()));
+    return events.toString();
+  }
+
+  @Override
+  public void close() {
+    poller.shutdownNow();
+  }
+}
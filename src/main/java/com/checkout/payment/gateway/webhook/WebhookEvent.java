@@ -0,0 +1,9 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+
+public record WebhookEvent(String type, PaymentResponse payment) {
+
+  public static final String PAYMENT_PROCESSED = "payment.processed";
+  public static final String PAYMENT_RESOLVED = "payment.resolved";
+}
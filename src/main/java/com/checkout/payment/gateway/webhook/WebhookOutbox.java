@@ -0,0 +1,144 @@
+package com.checkout.payment.gateway.webhook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Webhook events waiting for delivery, in a table of the gateway's database so they survive a
+ * restart. Events are claimed for a lease before they are sent; if the gateway stops before the
+ * outcome is recorded, they are sent again once the lease runs out, so merchants can see the
+ * same event more than once. Instances sharing the database claim from the same table; an event
+ * only goes to the instance whose lease update matched it.
+ *
+ * <p>An event is enqueued after its payment is saved, not in the same transaction, and with
+ * tiered or sharded storage not even in the same database. A gateway that stops between the two
+ * loses the event, while the payment itself stays available through {@code GET /payments/{id}}.
+ */
+public class WebhookOutbox {
+
+  public record Event(long id, String merchant, String payload, int attempts) {
+  }
+
+  private static final RowMapper<Event> EVENT_ROW_MAPPER = (rs, rowNum) -> new Event(
+      rs.getLong("id"),
+      rs.getString("merchant"),
+      rs.getString("payload"),
+      rs.getInt("attempts")
+  );
+
+  private final JdbcTemplate jdbc;
+
+  public WebhookOutbox(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+    jdbc.execute("""
+        CREATE TABLE IF NOT EXISTS webhook_outbox (
+          id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+          merchant VARCHAR(255) NOT NULL,
+          payload VARCHAR(4000) NOT NULL,
+          attempts INTEGER NOT NULL,
+          next_attempt_at BIGINT NOT NULL,
+          failed BOOLEAN NOT NULL
+        )""");
+    jdbc.execute("""
+        CREATE INDEX IF NOT EXISTS webhook_outbox_due ON webhook_outbox (failed, next_attempt_at)""");
+    jdbc.execute("""
+        CREATE TABLE IF NOT EXISTS webhook_pending_payment (
+          payment_id VARCHAR(36) PRIMARY KEY,
+          merchant VARCHAR(255) NOT NULL
+        )""");
+  }
+
+  /**
+   * Keeps the merchant of a pending payment, to notify it once the payment is resolved.
+   */
+  public void rememberPending(UUID paymentId, String merchant) {
+    jdbc.update("INSERT INTO webhook_pending_payment (payment_id, merchant) VALUES (?, ?)",
+        paymentId.toString(), merchant);
+  }
+
+  /**
+   * @return the merchant of the pending payment, which is forgotten, or null if none was kept
+   */
+  public String takePendingMerchant(UUID paymentId) {
+    List<String> merchants = jdbc.queryForList(
+        "SELECT merchant FROM webhook_pending_payment WHERE payment_id = ?", String.class,
+        paymentId.toString());
+    if (merchants.isEmpty()) {
+      return null;
+    }
+    jdbc.update("DELETE FROM webhook_pending_payment WHERE payment_id = ?",
+        paymentId.toString());
+    return merchants.get(0);
+  }
+
+  public void enqueue(String merchant, String payload, long now) {
+    jdbc.update("""
+        INSERT INTO webhook_outbox (merchant, payload, attempts, next_attempt_at, failed)
+        VALUES (?, ?, 0, ?, FALSE)""", merchant, payload, now);
+  }
+
+  /**
+   * @return events due for delivery, oldest first, which are not due again until the lease ends
+   */
+  public List<Event> claimDue(long now, long leaseUntil, int limit) {
+    List<Event> due = jdbc.query("""
+        SELECT id, merchant, payload, attempts FROM webhook_outbox
+        WHERE failed = FALSE AND next_attempt_at <= ?
+        ORDER BY id
+        LIMIT ?""", EVENT_ROW_MAPPER, now, limit);
+    if (due.isEmpty()) {
+      return due;
+    }
+    // another instance may have claimed some of them since they were read; the lease only
+    // matches the events that are still due, and only those are kept
+    int[] updated = jdbc.batchUpdate("""
+            UPDATE webhook_outbox SET next_attempt_at = ?
+            WHERE id = ? AND failed = FALSE AND next_attempt_at <= ?""",
+        due.stream().map(event -> new Object[] {leaseUntil, event.id(), now}).toList());
+    List<Event> claimed = new ArrayList<>(due.size());
+    for (int i = 0; i < due.size(); i++) {
+      if (updated[i] == 1) {
+        claimed.add(due.get(i));
+      }
+    }
+    return claimed;
+  }
+
+  /**
+   * Makes claimed events that were not sent due again right away.
+   */
+  public void release(List<Event> events, long now) {
+    jdbc.batchUpdate("UPDATE webhook_outbox SET next_attempt_at = ? WHERE id = ?",
+        events.stream().map(event -> new Object[] {now, event.id()}).toList());
+  }
+
+  public void delivered(List<Event> events) {
+    jdbc.batchUpdate("DELETE FROM webhook_outbox WHERE id = ?",
+        events.stream().map(event -> new Object[] {event.id()}).toList());
+  }
+
+  public void retryAt(Event event, long nextAttemptAt) {
+    jdbc.update("""
+        UPDATE webhook_outbox SET attempts = attempts + 1, next_attempt_at = ?
+        WHERE id = ?""", nextAttemptAt, event.id());
+  }
+
+  /**
+   * Stops delivery of the events, keeping them for inspection.
+   */
+  public void failed(List<Event> events) {
+    jdbc.batchUpdate("""
+            UPDATE webhook_outbox SET attempts = attempts + 1, failed = TRUE
+            WHERE id = ?""",
+        events.stream().map(event -> new Object[] {event.id()}).toList());
+  }
+
+  public int pending() {
+    Integer count = jdbc.queryForObject(
+        "SELECT COUNT(*) FROM webhook_outbox WHERE failed = FALSE", Integer.class);
+    return count == null ? 0 : count;
+  }
+}
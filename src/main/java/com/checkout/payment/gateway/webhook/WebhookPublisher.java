@@ -0,0 +1,28 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+
+/**
+ * Notifies merchants of payment outcomes, so they don't have to poll for them.
+ */
+public interface WebhookPublisher {
+
+  void paymentProcessed(String merchant, PaymentResponse payment);
+
+  /**
+   * Notifies the merchant of a pending payment of the outcome it was given on reconciliation.
+   */
+  void paymentResolved(PaymentResponse payment);
+
+  static WebhookPublisher noOp() {
+    return new WebhookPublisher() {
+      @Override
+      public void paymentProcessed(String merchant, PaymentResponse payment) {
+      }
+
+      @Override
+      public void paymentResolved(PaymentResponse payment) {
+      }
+    };
+  }
+}
@@ -1,4 +1,4 @@
-CREATE TABLE payments (
+CREATE TABLE IF NOT EXISTS payments (
                         id UUID PRIMARY KEY,
                         status VARCHAR(50) NOT NULL,
                         card_number_last_four VARCHAR(4),
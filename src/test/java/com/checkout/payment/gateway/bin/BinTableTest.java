@@ -0,0 +1,97 @@
+package com.checkout.payment.gateway.bin;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinTableTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void whenRangesNested_thenInnermostRangeApplies() throws Exception {
+    // given
+    BinTable table = parse("""
+        # low,high,scheme,issuer,supported
+        4,4,VISA,,true
+        62,62,UNIONPAY,,false
+        622126,622925,DISCOVER,,true
+        62212700,62212799,DISCOVER,Some Bank,true
+        """);
+
+    // when + then
+    assertThat(table.lookup("4111111111111111").scheme()).isEqualTo("VISA");
+    assertThat(table.lookup("6200000000000000").scheme()).isEqualTo("UNIONPAY");
+    assertThat(table.lookup("6221260000000000").scheme()).isEqualTo("DISCOVER");
+    assertThat(table.lookup("6221275000000000").issuer()).isEqualTo("Some Bank");
+    assertThat(table.lookup("6221285000000000").issuer()).isEmpty();
+    assertThat(table.lookup("6229260000000000").scheme()).isEqualTo("UNIONPAY");
+    assertThat(table.lookup("6299999999999999").supported()).isFalse();
+  }
+
+  @Test
+  void whenCardNumberOutsideAllRanges_thenNotFound() throws Exception {
+    // given
+    BinTable table = parse("""
+        34,34,AMEX,,true
+        37,37,AMEX,,true
+        """);
+
+    // when + then
+    assertThat(table.lookup("350000000000000")).isNull();
+    assertThat(table.lookup("3399999999999999")).isNull();
+    assertThat(table.lookup("3412")).isNull();
+    assertThat(table.lookup("34x0000000000000")).isNull();
+  }
+
+  @Test
+  void whenRangesOverlapPartially_thenRejected() {
+    assertThatThrownBy(() -> parse("""
+        40,45,VISA,,true
+        44,49,VISA,,true
+        """))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("overlap");
+  }
+
+  @Test
+  void whenFileChanged_thenReloadedTableUsed() throws Exception {
+    // given
+    Path file = directory.resolve("bins.csv");
+    Files.writeString(file, "4,4,VISA,,true\n");
+    BinTableRegistry registry = BinTableRegistry.load(new FileSystemResource(file));
+
+    // when
+    Files.writeString(file, "4,4,VISA,,false\n");
+    registry.reload();
+
+    // then
+    assertThat(registry.lookup("4111111111111111").supported()).isFalse();
+  }
+
+  @Test
+  void whenChangedFileInvalid_thenPreviousTableKept() throws Exception {
+    // given
+    Path file = directory.resolve("bins.csv");
+    Files.writeString(file, "4,4,VISA,,true\n");
+    BinTableRegistry registry = BinTableRegistry.load(new FileSystemResource(file));
+
+    // when
+    Files.writeString(file, "4,VISA,true\n");
+
+    // then
+    assertThatThrownBy(registry::reload).isInstanceOf(IllegalArgumentException.class);
+    assertThat(registry.lookup("4111111111111111").supported()).isTrue();
+  }
+
+  private static BinTable parse(String csv) throws Exception {
+    return BinTable.parse(new BufferedReader(new StringReader(csv)));
+  }
+}
@@ -0,0 +1,77 @@
+package com.checkout.payment.gateway.cache;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares a payment lookup answered from {@link PaymentResponseCache} with building and
+ * serializing its response with Jackson, as a lookup did before. Excluded from
+ * `./gradlew test`, run with `./gradlew benchmark`.
+ */
+@Slf4j
+@Tag("benchmark")
+class PaymentResponseCacheBenchmark {
+
+  private static final int PAYMENTS = 100_000;
+  private static final int LOOKUPS = 10_000_000;
+  private static final int ROUNDS = 5;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void lookupLatency() throws Exception {
+    PaymentResponseCache cache = new PaymentResponseCache(objectMapper, DataSize.ofMegabytes(256));
+    PaymentResponse[] responses = new PaymentResponse[PAYMENTS];
+    for (int i = 0; i < PAYMENTS; i++) {
+      responses[i] = new PaymentResponse(UUID.randomUUID(), PaymentStatus.AUTHORIZED, "8877", 12,
+          2099, "GBP", 100 + i);
+      cache.put(responses[i]);
+    }
+
+    // the first rounds warm up both paths, the last one is reported
+    double hitNanos = 0;
+    double serializeNanos = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      hitNanos = hits(cache, responses);
+      serializeNanos = serializations(responses);
+    }
+
+    log.info("Payment lookup, {} payments: cache hit = {} ns, building and serializing = {} ns",
+        PAYMENTS, String.format("%.1f", hitNanos), String.format("%.1f", serializeNanos));
+    assertThat(cache.size()).isEqualTo(PAYMENTS);
+  }
+
+  private double hits(PaymentResponseCache cache, PaymentResponse[] responses) {
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < LOOKUPS; i++) {
+      sink += cache.get(responses[i % PAYMENTS].getId()).json().length;
+    }
+    long elapsed = System.nanoTime() - start;
+    assertThat(sink).isPositive();
+    return (double) elapsed / LOOKUPS;
+  }
+
+  private double serializations(PaymentResponse[] responses) throws Exception {
+    int serializations = LOOKUPS / 10;
+    long sink = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < serializations; i++) {
+      PaymentResponse stored = responses[i % PAYMENTS];
+      PaymentResponse response = new PaymentResponse(stored.getId(), stored.getStatus(),
+          stored.getCardNumberLastFour(), stored.getExpiryMonth(), stored.getExpiryYear(),
+          stored.getCurrency(), stored.getAmount());
+      sink += objectMapper.writeValueAsBytes(response).length;
+    }
+    long elapsed = System.nanoTime() - start;
+    assertThat(sink).isPositive();
+    return (double) elapsed / serializations;
+  }
+}
@@ -0,0 +1,68 @@
+package com.checkout.payment.gateway.cache;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentResponseCacheTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  void whenPut_thenSameBytesAsJacksonWithStableEtag() throws Exception {
+    // given
+    PaymentResponseCache cache = new PaymentResponseCache(objectMapper, DataSize.ofKilobytes(64));
+    PaymentResponse response = response();
+
+    // when
+    SerializedPayment put = cache.put(response);
+    SerializedPayment other = cache.put(response());
+
+    // then
+    assertThat(put.json()).isEqualTo(objectMapper.writeValueAsBytes(response));
+    assertThat(put.etag()).startsWith("\"").endsWith("\"").isNotEqualTo(other.etag());
+    assertThat(cache.get(response.getId())).isSameAs(put);
+    assertThat(cache.get(UUID.randomUUID())).isNull();
+  }
+
+  @Test
+  void whenOverMaxSize_thenOldestEvicted() {
+    // given
+    PaymentResponseCache cache = new PaymentResponseCache(objectMapper, DataSize.ofKilobytes(4));
+    List<PaymentResponse> responses = new ArrayList<>();
+
+    // when
+    for (int i = 0; i < 100; i++) {
+      PaymentResponse response = response();
+      responses.add(response);
+      cache.put(response);
+    }
+
+    // then
+    assertThat(cache.sizeInBytes()).isLessThanOrEqualTo(DataSize.ofKilobytes(4).toBytes());
+    assertThat(cache.size()).isBetween(1, 99);
+    assertThat(cache.get(responses.get(0).getId())).isNull();
+    assertThat(cache.get(responses.get(99).getId())).isNotNull();
+  }
+
+  @Test
+  void whenPending_thenServedButNotCached() {
+    PaymentResponseCache cache = new PaymentResponseCache(objectMapper, DataSize.ofKilobytes(64));
+    PaymentResponse pending = new PaymentResponse(UUID.randomUUID(), PaymentStatus.PENDING,
+        "4242", 12, 2030, "GBP", 100);
+
+    assertThat(cache.put(pending).json()).isNotEmpty();
+    assertThat(cache.get(pending.getId())).isNull();
+  }
+
+  private PaymentResponse response() {
+    return new PaymentResponse(UUID.randomUUID(), PaymentStatus.AUTHORIZED, "4242", 12, 2030,
+        "GBP", 100);
+  }
+}
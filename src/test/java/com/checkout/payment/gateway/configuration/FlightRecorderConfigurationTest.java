@@ -0,0 +1,52 @@
+package com.checkout.payment.gateway.configuration;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecorderConfigurationTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void whenRecordingStarted_thenEventsWithCredentialsDisabled() throws Exception {
+    try (Recording recording = new FlightRecorderConfiguration()
+        .paymentGatewayRecording(new FlightRecorderProperties())) {
+      assertThat(recording.getSettings())
+          .containsEntry("jdk.InitialEnvironmentVariable#enabled", "false")
+          .containsEntry("jdk.InitialSystemProperty#enabled", "false")
+          .containsEntry("jdk.JVMInformation#enabled", "false")
+          .containsEntry("jdk.SystemProcess#enabled", "false");
+    }
+  }
+
+  @Test
+  void whenRecordingDumped_thenNoJvmArgumentsInIt() throws Exception {
+    // given
+    Path dump = directory.resolve("recording.jfr");
+    try (Recording recording = new FlightRecorderConfiguration()
+        .paymentGatewayRecording(new FlightRecorderProperties())) {
+
+      // when: stopping emits the events recorded once per chunk, JVMInformation among them
+      recording.stop();
+      recording.dump(dump);
+    }
+
+    // then
+    assertThat(Files.size(dump)).isPositive();
+    List<String> types = RecordingFile.readAllEvents(dump).stream()
+        .map(RecordedEvent::getEventType)
+        .map(EventType::getName)
+        .distinct()
+        .toList();
+    assertThat(types).doesNotContainAnyElementsOf(FlightRecorderConfiguration.SENSITIVE_EVENTS);
+  }
+}
@@ -1,34 +1,59 @@
 package com.checkout.payment.gateway.controller;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import com.checkout.payment.gateway.cache.PaymentResponseCache;
+import com.checkout.payment.gateway.configuration.CardVelocityConfiguration;
+import com.checkout.payment.gateway.configuration.MerchantThrottlingConfiguration;
 import com.checkout.payment.gateway.model.enums.PaymentStatus;
 import com.checkout.payment.gateway.exception.CommonExceptionHandler;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
+import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
 import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
 import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.Deadline;
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
 import com.checkout.payment.gateway.validation.PaymentRequestValidator;
 import com.checkout.payment.gateway.service.impl.PaymentGatewayServiceImpl;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import com.checkout.payment.gateway.shutdown.InFlightPayments;
+import com.checkout.payment.gateway.throttling.FairPaymentScheduler;
+import com.checkout.payment.gateway.throttling.MerchantRateLimiter;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import java.time.Duration;
 import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 @WebMvcTest(controllers = PaymentGatewayController.class)
-@Import({PaymentGatewayServiceImpl.class, CommonExceptionHandler.class})
+@Import({PaymentGatewayServiceImpl.class, TimeOrderedPaymentIdGenerator.class,
+    MerchantThrottlingConfiguration.class, CardVelocityConfiguration.class,
+    PaymentResponseCache.class, InFlightPayments.class, CommonExceptionHandler.class})
 @ActiveProfiles("test")
 class PaymentGatewayControllerTest {
 
@@ -44,6 +69,15 @@ class PaymentGatewayControllerTest {
   @MockBean
   PaymentRequestValidator paymentRequestValidator;
 
+  @MockBean
+  PaymentIdFilter paymentIdFilter;
+
+  @MockBean
+  PaymentIntentLog paymentIntentLog;
+
+  @MockBean
+  WebhookPublisher webhookPublisher;
+
   @Test
   void whenPaymentWithIdExistThenCorrectPaymentIsReturned() throws Exception {
     // given
@@ -71,6 +105,25 @@ class PaymentGatewayControllerTest {
         .andExpect(jsonPath("$.amount").value(payment.getAmount()));
   }
 
+  @Test
+  void whenPaymentPolledWithItsEtag_then304IsReturned() throws Exception {
+    // given
+    Payment payment = new Payment(UUID.randomUUID(), PaymentStatus.DECLINED, "4321", 12, 2024,
+        "GBP", 10);
+    Mockito.when(paymentsRepository.findById(payment.getId()))
+        .thenReturn(Optional.of(payment));
+    String etag = mvc.perform(MockMvcRequestBuilders.get("/payments/" + payment.getId()))
+        .andExpect(status().isOk())
+        .andExpect(header().exists(HttpHeaders.ETAG))
+        .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+    // when + then
+    mvc.perform(MockMvcRequestBuilders.get("/payments/" + payment.getId())
+            .header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, etag));
+  }
+
   @Test
   void whenPaymentWithIdDoesNotExistThen404IsReturned() throws Exception {
     mvc.perform(MockMvcRequestBuilders.get("/payments/" + UUID.randomUUID()))
@@ -178,7 +231,7 @@ class PaymentGatewayControllerTest {
   @Test
   void whenCardEndsOdd_thenAuthorized() throws Exception {
     // given + when: acquirer will authorize payment
-    when(bankClient.charge(any(BankAcquiryRequest.class)))
+    when(bankClient.charge(any(BankAcquiryRequest.class), any()))
         .thenReturn(new BankAcquiryResponse(true, "AUTH_CODE"));
 
     String body = """
@@ -205,7 +258,7 @@ class PaymentGatewayControllerTest {
   @Test
   void whenCardEndsEven_thenDeclined() throws Exception {
     // given+when: acquirer declining payment
-    when(bankClient.charge(any(BankAcquiryRequest.class)))
+    when(bankClient.charge(any(BankAcquiryRequest.class), any()))
         .thenReturn(new BankAcquiryResponse(false, "AUTH_CODE"));
 
     String body = """
@@ -232,7 +285,7 @@ class PaymentGatewayControllerTest {
   @Test
   void whenCardEndsZero_thenAcquirerUnavailableDeclined() throws Exception {
     // given+when: acquirer is unavailable
-    when(bankClient.charge(any(BankAcquiryRequest.class)))
+    when(bankClient.charge(any(BankAcquiryRequest.class), any()))
         .thenThrow(new com.checkout.payment.gateway.exception.AcquirerUnavailableException("Acquirer unavailable", null));
 
     String body = """
@@ -279,4 +332,168 @@ class PaymentGatewayControllerTest {
         .andExpect(status().isServiceUnavailable())
         .andExpect(jsonPath("$.code").value("INTERNAL_ERROR"));
   }
+
+  @Test
+  void whenClientTimeoutNotPositiveNumber_then400() throws Exception {
+    String body = """
+        {
+          "cardNumber": "2222405343248877",
+          "expiryMonth": 12,
+          "expiryYear": 2099,
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+
+    // when+then: a timeout that is zero, negative, not a number or out of range is invalid
+    for (String timeout : List.of("0", "-1", String.valueOf(Long.MIN_VALUE), "soon",
+        "99999999999999999999")) {
+      mvc.perform(
+              MockMvcRequestBuilders.post("/payments")
+                  .header(PaymentGatewayController.API_KEY_HEADER, "impatient-merchant")
+                  .header(PaymentGatewayController.TIMEOUT_HEADER, timeout)
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(body))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.code").value("INVALID_REQUEST"));
+    }
+
+    Mockito.verifyNoInteractions(bankClient);
+  }
+
+  @Test
+  void whenClientTimeoutTooShortForAcquirer_thenRaisedToMinimum() throws Exception {
+    // given
+    ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+    when(bankClient.charge(any(BankAcquiryRequest.class), deadline.capture()))
+        .thenReturn(new BankAcquiryResponse(true, "AUTH_CODE"));
+    String body = """
+        {
+          "cardNumber": "2222405343248877",
+          "expiryMonth": 12,
+          "expiryYear": 2099,
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+
+    // when
+    mvc.perform(
+            MockMvcRequestBuilders.post("/payments")
+                .header(PaymentGatewayController.API_KEY_HEADER, "hasty-merchant")
+                .header(PaymentGatewayController.TIMEOUT_HEADER, "1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk());
+
+    // then: the acquirer got most of the 2s minimum rather than 1ms
+    assertThat(deadline.getValue().remaining()).isGreaterThan(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void whenPaymentQueuedForASlot_thenAcquirerStillGetsMinimum() throws Exception {
+    // given: the only slot is taken for 400ms, the minimum is 500ms
+    PaymentGatewayService service = Mockito.mock(PaymentGatewayService.class);
+    ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+    when(service.processPayment(any(), any(), deadline.capture())).thenReturn(null);
+    FairPaymentScheduler scheduler = new FairPaymentScheduler(1, 5_000, merchant -> 1.0);
+    MerchantRateLimiter rateLimiter = new MerchantRateLimiter(1_000, 1_000, 10, Set.of(),
+        System::nanoTime);
+    PaymentGatewayController controller = new PaymentGatewayController(service, rateLimiter,
+        scheduler, Duration.ofSeconds(10), Duration.ofMillis(500), Duration.ofSeconds(30));
+    CountDownLatch slotTaken = new CountDownLatch(1);
+    Thread other = new Thread(() -> scheduler.run("other-merchant", () -> {
+      slotTaken.countDown();
+      sleep(400);
+      return null;
+    }));
+    other.start();
+    slotTaken.await();
+
+    // when
+    controller.process("queued-merchant", "1", new PaymentRequest());
+    other.join();
+
+    // then: the deadline was counted from admission, not from the request's arrival
+    assertThat(deadline.getValue().remaining()).isGreaterThan(Duration.ofMillis(300));
+    rateLimiter.close();
+  }
+
+  @Test
+  void whenApiKeySent_thenOnlyItsMerchantIdPassedOn() {
+    // given: the merchant has a weight configured under its api key
+    PaymentGatewayService service = Mockito.mock(PaymentGatewayService.class);
+    ArgumentCaptor<String> merchant = ArgumentCaptor.forClass(String.class);
+    when(service.processPayment(merchant.capture(), any(), any())).thenReturn(null);
+    Map<String, Double> weights = MerchantIds.byMerchant(Map.of("secret-key", 4.0));
+    FairPaymentScheduler scheduler = new FairPaymentScheduler(1, 5_000,
+        key -> weights.getOrDefault(key, 1.0));
+    MerchantRateLimiter rateLimiter = new MerchantRateLimiter(1_000, 1_000, 10,
+        MerchantIds.ofApiKeys(Set.of("secret-key")), System::nanoTime);
+    PaymentGatewayController controller = new PaymentGatewayController(service, rateLimiter,
+        scheduler, Duration.ofSeconds(10), Duration.ofMillis(500), Duration.ofSeconds(30));
+
+    // when
+    controller.process("secret-key", null, new PaymentRequest());
+    controller.process(null, null, new PaymentRequest());
+
+    // then: the service sees the id, which still finds the merchant's configuration
+    assertThat(merchant.getAllValues())
+        .containsExactly(MerchantIds.fromApiKey("secret-key"), MerchantIds.ANONYMOUS)
+        .noneMatch(id -> id.contains("secret-key"));
+    assertThat(weights.get(merchant.getAllValues().get(0))).isEqualTo(4.0);
+    rateLimiter.close();
+  }
+
+  @Test
+  void whenMerchantExceedsRateLimit_then429() throws Exception {
+    // given: acquirer authorizes everything, test profile allows a burst of 20 per merchant
+    when(bankClient.charge(any(BankAcquiryRequest.class), any()))
+        .thenReturn(new BankAcquiryResponse(true, "AUTH_CODE"));
+
+    String body = """
+        {
+          "cardNumber": "2222405343248877",
+          "expiryMonth": 12,
+          "expiryYear": 2099,
+          "currency": "GBP",
+          "amount": 100,
+          "cvv": "123"
+        }
+        """;
+
+    // when: a noisy merchant sends more than its burst
+    int throttled = 0;
+    for (int i = 0; i < 30; i++) {
+      int status = mvc.perform(
+              MockMvcRequestBuilders.post("/payments")
+                  .header(PaymentGatewayController.API_KEY_HEADER, "noisy-merchant")
+                  .contentType(MediaType.APPLICATION_JSON)
+                  .content(body))
+          .andReturn().getResponse().getStatus();
+      if (status == 429) {
+        throttled++;
+      }
+    }
+
+    // then: it gets 429s while another merchant is still served
+    org.assertj.core.api.Assertions.assertThat(throttled).isPositive();
+    mvc.perform(
+            MockMvcRequestBuilders.post("/payments")
+                .header(PaymentGatewayController.API_KEY_HEADER, "quiet-merchant")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value(PaymentStatus.AUTHORIZED.getName()));
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
 }
@@ -0,0 +1,166 @@
+package com.checkout.payment.gateway.profiling;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import com.checkout.payment.gateway.cache.PaymentResponseCache;
+import com.checkout.payment.gateway.configuration.AcquirerProperties;
+import com.checkout.payment.gateway.exception.NotFoundException;
+import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
+import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
+import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
+import com.checkout.payment.gateway.service.BankClient;
+import com.checkout.payment.gateway.service.Deadline;
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.checkout.payment.gateway.service.PaymentGatewayService;
+import com.checkout.payment.gateway.service.impl.BankHttpClient;
+import com.checkout.payment.gateway.service.impl.PaymentGatewayServiceImpl;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import com.checkout.payment.gateway.shutdown.InFlightPayments;
+import com.checkout.payment.gateway.throttling.CardVelocityLimiter;
+import com.checkout.payment.gateway.throttling.RetryBudget;
+import com.checkout.payment.gateway.validation.PaymentRequestValidator;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+class PaymentEventsTest {
+
+  @TempDir
+  Path directory;
+
+  private Recording recording;
+
+  @BeforeEach
+  void setUp() {
+    // no thresholds, so every event is recorded
+    recording = new Recording();
+    recording.enable(PaymentProcessedEvent.class).withoutThreshold();
+    recording.enable(AcquirerCallEvent.class).withoutThreshold();
+    recording.enable(PaymentLookupEvent.class).withoutThreshold();
+    recording.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    recording.close();
+  }
+
+  @Test
+  void whenPaymentProcessedAndLookedUp_thenEventsRecorded() throws Exception {
+    // given
+    PaymentsRepository repo = mock(PaymentsRepository.class);
+    BankClient acquirer = mock(BankClient.class);
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+    PaymentIdFilter idFilter = new PaymentIdFilter(repo, true, 1000, 0.01, false, 1,
+        true, Duration.ofMinutes(5), "time-ordered");
+    idFilter.rebuild();
+    PaymentGatewayService service = new PaymentGatewayServiceImpl(repo, acquirer,
+        mock(PaymentRequestValidator.class), new TimeOrderedPaymentIdGenerator(), idFilter,
+        mock(PaymentIntentLog.class),
+        new CardVelocityLimiter(new byte[32], 3, 1000, Duration.ofMinutes(10), 10, 1024, 256,
+            System::currentTimeMillis),
+        WebhookPublisher.noOp(),
+        new PaymentResponseCache(new ObjectMapper(), DataSize.ofMegabytes(1)),
+        new InFlightPayments());
+
+    // when
+    String merchant = MerchantIds.fromApiKey("merchant-1");
+    PaymentResponse processed = service.processPayment(merchant, request(),
+        Deadline.after(Duration.ofSeconds(5)));
+    when(repo.findById(processed.getId())).thenReturn(Optional.empty());
+    assertThatThrownBy(() -> service.getPaymentById(processed.getId()))
+        .isInstanceOf(NotFoundException.class);
+    assertThatThrownBy(() -> service.getPaymentById(UUID.randomUUID()))
+        .isInstanceOf(NotFoundException.class);
+
+    // then
+    List<RecordedEvent> events = recordedEvents();
+    RecordedEvent payment = single(events, "com.checkout.payment.PaymentProcessed");
+    assertThat(payment.getString("paymentId")).isEqualTo(processed.getId().toString());
+    assertThat(payment.getString("merchant")).isEqualTo(merchant);
+    assertThat(payment.getString("status")).isEqualTo("Authorized");
+    assertThat(payment.getDuration("acquirerDuration")).isLessThanOrEqualTo(payment.getDuration());
+    assertThat(events)
+        .filteredOn(event -> event.getEventType().getName()
+            .equals("com.checkout.payment.PaymentLookup"))
+        .extracting(event -> event.getString("source"))
+        .containsExactlyInAnyOrder(PaymentLookupEvent.SOURCE_REPOSITORY,
+            PaymentLookupEvent.SOURCE_ID_FILTER);
+  }
+
+  @Test
+  void whenAcquirerCallRetried_thenAttemptsRecorded() throws Exception {
+    // given: an acquirer that is unavailable once
+    AtomicInteger calls = new AtomicInteger();
+    WebClient.Builder builder = WebClient.builder()
+        .exchangeFunction(request -> Mono.fromSupplier(() -> calls.incrementAndGet() == 1
+            ? ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build()
+            : ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"authorized\":false,\"authorization_code\":\"\"}")
+                .build()));
+    AcquirerProperties properties = new AcquirerProperties();
+    properties.setUrl("http://acquirer");
+    properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+    BankHttpClient client = new BankHttpClient(builder, properties, new RetryBudget(0.1, 10),
+        BinTableRegistry.disabled());
+
+    // when
+    client.charge(new BankAcquiryRequest("2222405343248877", "12/2099", "GBP", 100, "123"),
+        Deadline.after(Duration.ofSeconds(5)));
+
+    // then
+    RecordedEvent call = single(recordedEvents(), "com.checkout.payment.AcquirerCall");
+    assertThat(call.getInt("attempts")).isEqualTo(2);
+    assertThat(call.getInt("statusCode")).isEqualTo(200);
+    assertThat(call.getString("outcome")).isEqualTo("Declined");
+  }
+
+  private List<RecordedEvent> recordedEvents() throws Exception {
+    Path file = directory.resolve("test.jfr");
+    recording.dump(file);
+    return RecordingFile.readAllEvents(file);
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String type) {
+    List<RecordedEvent> matching = events.stream()
+        .filter(event -> event.getEventType().getName().equals(type))
+        .toList();
+    assertThat(matching).hasSize(1);
+    return matching.get(0);
+  }
+
+  private static PaymentRequest request() {
+    YearMonth expiry = YearMonth.now().plusYears(1);
+    return new PaymentRequest("2222405343248877", expiry.getMonthValue(), expiry.getYear(),
+        "GBP", 100, "123");
+  }
+}
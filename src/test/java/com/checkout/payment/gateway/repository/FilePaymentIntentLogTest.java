@@ -0,0 +1,97 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.impl.FilePaymentIntentLog;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilePaymentIntentLogTest {
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void whenReopened_thenOnlyIntentsNotCompletedAreUnfinished() throws Exception {
+    // given
+    Path file = directory.resolve("intents.log");
+    Payment completed = pending();
+    Payment interrupted = pending();
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 1024 * 1024)) {
+      log.begin(completed);
+      log.begin(interrupted);
+      log.complete(completed.getId());
+    }
+
+    // when
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 1024 * 1024)) {
+      // then
+      assertThat(log.unfinished()).extracting(Payment::getId).containsExactly(interrupted.getId());
+      assertThat(log.unfinished().get(0).getStatus()).isEqualTo(PaymentStatus.PENDING);
+    }
+  }
+
+  @Test
+  void whenLastRecordTorn_thenEarlierIntentsStillRecovered() throws Exception {
+    // given
+    Path file = directory.resolve("intents.log");
+    Payment interrupted = pending();
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 1024 * 1024)) {
+      log.begin(interrupted);
+    }
+    Files.write(file, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    // when
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 1024 * 1024)) {
+      // then
+      assertThat(log.unfinished()).extracting(Payment::getId).containsExactly(interrupted.getId());
+    }
+  }
+
+  @Test
+  void whenConcurrentPaymentsAndLogRewritten_thenOpenIntentsKept() throws Exception {
+    // given: a limit small enough for the log to be rewritten many times
+    Path file = directory.resolve("intents.log");
+    Payment interrupted = pending();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 4 * 1024)) {
+      log.begin(interrupted);
+
+      // when
+      List<Future<?>> payments = new ArrayList<>();
+      for (int i = 0; i < 2000; i++) {
+        payments.add(executor.submit(() -> {
+          Payment payment = pending();
+          log.begin(payment);
+          log.complete(payment.getId());
+        }));
+      }
+      for (Future<?> payment : payments) {
+        payment.get();
+      }
+      assertThat(log.openIntents()).isEqualTo(1);
+    } finally {
+      executor.shutdown();
+    }
+
+    // then
+    assertThat(Files.size(file)).isLessThan(8 * 1024);
+    try (FilePaymentIntentLog log = new FilePaymentIntentLog(file, 4 * 1024)) {
+      assertThat(log.unfinished()).extracting(Payment::getId).containsExactly(interrupted.getId());
+    }
+  }
+
+  private static Payment pending() {
+    return new Payment(UUID.randomUUID(), PaymentStatus.PENDING, "8877", 12, 2099, "GBP", 100);
+  }
+}
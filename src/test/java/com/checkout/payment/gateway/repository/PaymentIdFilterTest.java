@@ -0,0 +1,103 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.availability.ApplicationAvailabilityBean;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class PaymentIdFilterTest {
+
+  private final PaymentsRepository repo = mock(PaymentsRepository.class);
+
+  @Test
+  void whenDatabaseShared_thenIdCreatedByAnotherInstanceAfterRebuildGoesToRepository() {
+    // given
+    PaymentIdFilter filter = filter(false, "time-ordered");
+    filter.rebuild();
+
+    // when: another instance saves a payment this filter has never seen
+    UUID createdElsewhere = new TimeOrderedPaymentIdGenerator().nextId();
+
+    // then
+    assertThat(filter.isDefinitelyAbsent(createdElsewhere)).isFalse();
+  }
+
+  @Test
+  void whenDatabaseShared_thenIdsOlderThanTheRebuildAreStillAnswered() {
+    // given
+    PaymentIdFilter filter = filter(false, "time-ordered");
+    filter.rebuild();
+    long anHourAgo = System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+
+    // when + then: the rebuild read everything saved by then, and random ids are never created
+    assertThat(filter.isDefinitelyAbsent(new TimeOrderedPaymentIdGenerator(() -> anHourAgo)
+        .nextId())).isTrue();
+    assertThat(filter.isDefinitelyAbsent(UUID.randomUUID())).isTrue();
+  }
+
+  @Test
+  void whenDatabaseSharedWithRandomIds_thenEveryLookupGoesToRepository() {
+    PaymentIdFilter filter = filter(false, "random");
+    filter.rebuild();
+
+    assertThat(filter.isDefinitelyAbsent(UUID.randomUUID())).isFalse();
+  }
+
+  @Test
+  void whenSingleInstance_thenRecentIdsAreAnswered() {
+    PaymentIdFilter filter = filter(true, "time-ordered");
+    filter.rebuild();
+
+    assertThat(filter.isDefinitelyAbsent(new TimeOrderedPaymentIdGenerator().nextId())).isTrue();
+  }
+
+  @Test
+  void whenRebuildingAtStartup_thenNotReadyUntilRebuilt() {
+    // given
+    UUID stored = UUID.randomUUID();
+    ApplicationAvailabilityBean availability = new ApplicationAvailabilityBean();
+    AtomicReference<ReadinessState> readinessWhileLoading = new AtomicReference<>();
+    doAnswer(invocation -> {
+      readinessWhileLoading.set(availability.getReadinessState());
+      Consumer<UUID> action = invocation.getArgument(1);
+      action.accept(stored);
+      return null;
+    }).when(repo).forEachIdParallel(anyInt(), any());
+    SpringApplication application = new SpringApplication(PaymentIdFilter.class);
+    application.setWebApplicationType(WebApplicationType.NONE);
+    application.setBannerMode(Banner.Mode.OFF);
+    application.addListeners(availability);
+    application.addInitializers(
+        context -> context.getBeanFactory().registerSingleton("paymentsRepository", repo));
+
+    // when
+    try (ConfigurableApplicationContext context = application.run()) {
+
+      // then
+      assertThat(readinessWhileLoading.get()).isEqualTo(ReadinessState.REFUSING_TRAFFIC);
+      assertThat(availability.getReadinessState()).isEqualTo(ReadinessState.ACCEPTING_TRAFFIC);
+      PaymentIdFilter filter = context.getBean(PaymentIdFilter.class);
+      assertThat(filter.isDefinitelyAbsent(stored)).isFalse();
+      assertThat(filter.isDefinitelyAbsent(UUID.randomUUID())).isTrue();
+    }
+  }
+
+  private PaymentIdFilter filter(boolean singleInstance, String idGenerator) {
+    return new PaymentIdFilter(repo, true, 1000, 0.01, false, 1, singleInstance,
+        Duration.ofMinutes(5), idGenerator);
+  }
+}
@@ -0,0 +1,50 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.repository.index.PaymentIdIndex;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentIdIndexTest {
+
+  @Test
+  void whenFilledInParallelPastItsExpectedSize_thenExactlyTheAddedIdsArePresent() {
+    // given: an index sized for a tenth of the ids, so every segment has to grow
+    PaymentIdIndex index = new PaymentIdIndex(10_000);
+    TimeOrderedPaymentIdGenerator generator = new TimeOrderedPaymentIdGenerator();
+    List<UUID> ids = IntStream.range(0, 100_000)
+        .mapToObj(i -> i % 2 == 0 ? generator.nextId() : UUID.randomUUID())
+        .toList();
+
+    // when
+    ids.parallelStream().forEach(index::put);
+
+    // then
+    assertThat(index.size()).isEqualTo(ids.size());
+    ids.forEach(id -> assertThat(index.contains(id)).isTrue());
+    IntStream.range(0, 100_000).forEach(i -> assertThat(index.contains(UUID.randomUUID())).isFalse());
+  }
+
+  @Test
+  void whenAddedTwice_thenCountedOnce() {
+    PaymentIdIndex index = new PaymentIdIndex(16);
+    UUID id = UUID.randomUUID();
+
+    assertThat(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits())).isTrue();
+    assertThat(index.put(id.getMostSignificantBits(), id.getLeastSignificantBits())).isFalse();
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  void whenNilId_thenRejected() {
+    PaymentIdIndex index = new PaymentIdIndex(16);
+
+    assertThatThrownBy(() -> index.put(new UUID(0, 0)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(index.contains(new UUID(0, 0))).isFalse();
+  }
+}
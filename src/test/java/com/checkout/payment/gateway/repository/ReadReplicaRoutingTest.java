@@ -0,0 +1,107 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.repository.replica.ReadYourWrites;
+import com.checkout.payment.gateway.repository.replica.ReplicaRoutingDataSource;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadReplicaRoutingTest {
+
+  private static final Duration WINDOW = Duration.ofSeconds(5);
+
+  private JdbcTemplate primary;
+  private JdbcTemplate replica;
+  private JdbcTemplate routed;
+  private DataSourceTransactionManager transactionManager;
+  private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+  private final ReadYourWrites readYourWrites = new ReadYourWrites(WINDOW, now::get);
+
+  @BeforeEach
+  void setUp() {
+    DriverManagerDataSource primaryDb = new DriverManagerDataSource(
+        "jdbc:h2:mem:replica-test-primary;DB_CLOSE_DELAY=-1", "sa", "");
+    DriverManagerDataSource replicaDb = new DriverManagerDataSource(
+        "jdbc:h2:mem:replica-test-replica;DB_CLOSE_DELAY=-1", "sa", "");
+    primary = new JdbcTemplate(primaryDb);
+    replica = new JdbcTemplate(replicaDb);
+    for (JdbcTemplate db : new JdbcTemplate[] {primary, replica}) {
+      db.execute("CREATE TABLE payments (id UUID PRIMARY KEY)");
+    }
+
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+        new ReplicaRoutingDataSource(primaryDb, replicaDb));
+    routed = new JdbcTemplate(dataSource);
+    transactionManager = new DataSourceTransactionManager(dataSource);
+  }
+
+  @AfterEach
+  void tearDown() {
+    primary.execute("DROP TABLE payments");
+    replica.execute("DROP TABLE payments");
+  }
+
+  @Test
+  void whenReadOnlyTransaction_thenReadFromReplica() {
+    // given: the replica hasn't caught up with the write yet
+    UUID id = UUID.randomUUID();
+    routed.update("INSERT INTO payments (id) VALUES (?)", id);
+
+    // when
+    TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+    readOnly.setReadOnly(true);
+    Integer onReplica = readOnly.execute(status -> count(id));
+    Integer onPrimary = new TransactionTemplate(transactionManager).execute(status -> count(id));
+
+    // then
+    assertThat(onReplica).isZero();
+    assertThat(onPrimary).isOne();
+    assertThat(primary.queryForObject("SELECT COUNT(*) FROM payments", Integer.class)).isOne();
+    assertThat(replica.queryForObject("SELECT COUNT(*) FROM payments", Integer.class)).isZero();
+  }
+
+  @Test
+  void whenTimeOrderedIdWithinWindow_thenRecent() {
+    // given
+    UUID id = new TimeOrderedPaymentIdGenerator(now::get).nextId();
+
+    // when
+    boolean recentAtFirst = readYourWrites.isRecent(id);
+    now.addAndGet(WINDOW.toMillis());
+
+    // then
+    assertThat(recentAtFirst).isTrue();
+    assertThat(readYourWrites.isRecent(id)).isFalse();
+  }
+
+  @Test
+  void whenRandomIdWrittenWithinWindow_thenRecent() {
+    // given
+    UUID written = UUID.randomUUID();
+    readYourWrites.written(written);
+
+    // when
+    boolean recentAtFirst = readYourWrites.isRecent(written);
+    boolean otherRecent = readYourWrites.isRecent(UUID.randomUUID());
+    now.addAndGet(WINDOW.toMillis());
+
+    // then
+    assertThat(recentAtFirst).isTrue();
+    assertThat(otherRecent).isFalse();
+    assertThat(readYourWrites.isRecent(written)).isFalse();
+  }
+
+  private int count(UUID id) {
+    return routed.queryForObject("SELECT COUNT(*) FROM payments WHERE id = ?", Integer.class, id);
+  }
+}
@@ -0,0 +1,40 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.repository.index.ScalableUuidBloomFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableUuidBloomFilterTest {
+
+  @Test
+  void whenGrownPastInitialCapacity_thenNoFalseNegatives() {
+    // given: ten times more ids than the first stage was sized for
+    ScalableUuidBloomFilter filter = new ScalableUuidBloomFilter(10_000, 0.01);
+    List<UUID> ids = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      UUID id = UUID.randomUUID();
+      ids.add(id);
+      filter.put(id);
+    }
+
+    // then
+    assertThat(filter.stageCount()).isGreaterThan(1);
+    ids.forEach(id -> assertThat(filter.mightContain(id)).isTrue());
+  }
+
+  @Test
+  void whenGrown_thenFalsePositiveRateStaysUnderTarget() {
+    ScalableUuidBloomFilter filter = new ScalableUuidBloomFilter(10_000, 0.01);
+    IntStream.range(0, 100_000).parallel().forEach(i -> filter.put(UUID.randomUUID()));
+
+    long falsePositives = IntStream.range(0, 100_000)
+        .filter(i -> filter.mightContain(UUID.randomUUID()))
+        .count();
+
+    assertThat(falsePositives / 100_000.0).isLessThan(0.015);
+  }
+}
@@ -0,0 +1,166 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.impl.ShardedPaymentsRepository;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedPaymentsRepositoryTest {
+
+  private final TimeOrderedPaymentIdGenerator ids = new TimeOrderedPaymentIdGenerator();
+  private List<DataSource> shards;
+  private ShardedPaymentsRepository repo;
+
+  @BeforeEach
+  void setUp() {
+    shards = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      DataSource shard = new DriverManagerDataSource(
+          "jdbc:h2:mem:shard-test-" + i + ";DB_CLOSE_DELAY=-1", "sa", "");
+      new ResourceDatabasePopulator(new ClassPathResource("init.sql")).execute(shard);
+      shards.add(shard);
+    }
+    repo = new ShardedPaymentsRepository(shards);
+  }
+
+  @AfterEach
+  void tearDown() {
+    shards.forEach(shard -> {
+      new JdbcTemplate(shard).execute("DROP TABLE payments");
+      new JdbcTemplate(shard).execute("DROP TABLE payments_shard");
+    });
+    repo.close();
+  }
+
+  @Test
+  void whenSaved_thenFoundOnItsShardOnly() {
+    // given
+    Payment payment = payment(ids.nextId());
+
+    // when
+    repo.save(payment);
+
+    // then
+    assertThat(repo.findById(payment.getId())).isPresent()
+        .get().extracting(Payment::getStatus).isEqualTo(PaymentStatus.AUTHORIZED);
+    for (int i = 0; i < shards.size(); i++) {
+      int rows = countRows(shards.get(i));
+      assertThat(rows).isEqualTo(i == repo.shardIndex(payment.getId()) ? 1 : 0);
+    }
+  }
+
+  @Test
+  void whenManySaved_thenSpreadOverAllShardsAndListedTogether() {
+    // given
+    for (int i = 0; i < 300; i++) {
+      repo.save(payment(ids.nextId()));
+    }
+
+    // then: every shard got a share and listing fans out to all of them
+    shards.forEach(shard -> assertThat(countRows(shard)).isGreaterThan(50));
+    assertThat(repo.findAll()).hasSize(300).isSortedAccordingTo(
+        (a, b) -> a.getId().compareTo(b.getId()));
+  }
+
+  @Test
+  void whenScannedInParallel_thenEveryIdSeenOnce() {
+    // given: time-ordered ids cover a narrow range, random ones the whole id space
+    Set<UUID> saved = new HashSet<>();
+    for (int i = 0; i < 500; i++) {
+      UUID id = i % 2 == 0 ? ids.nextId() : UUID.randomUUID();
+      saved.add(id);
+      repo.save(payment(id));
+    }
+
+    // when
+    Map<UUID, Integer> seen = new ConcurrentHashMap<>();
+    repo.forEachIdParallel(4, id -> seen.merge(id, 1, Integer::sum));
+
+    // then
+    assertThat(seen.keySet()).isEqualTo(saved);
+    assertThat(seen.values()).containsOnly(1);
+  }
+
+  @Test
+  void whenShardCountChanged_thenOpeningFails() {
+    // given: payments placed over three shards
+    repo.save(payment(ids.nextId()));
+
+    // when + then: with one shard less most of them would hash to another shard
+    assertThatThrownBy(() -> new ShardedPaymentsRepository(shards.subList(0, 2)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Shard 0 of 2 was created as shard 0 of 3");
+  }
+
+  @Test
+  void whenShardsReordered_thenOpeningFails() {
+    assertThatThrownBy(() -> new ShardedPaymentsRepository(
+        List.of(shards.get(1), shards.get(0), shards.get(2))))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("Shard 0 of 3 was created as shard 1 of 3");
+  }
+
+  @Test
+  void whenReopenedWithSameShards_thenPaymentsStillFound() {
+    // given
+    Payment payment = payment(ids.nextId());
+    repo.save(payment);
+
+    // when
+    ShardedPaymentsRepository reopened = new ShardedPaymentsRepository(shards);
+
+    // then
+    assertThat(reopened.findById(payment.getId())).isPresent();
+  }
+
+  @Test
+  void whenPendingResolved_thenOnlyThatPaymentUpdated() {
+    // given
+    Payment pending = new Payment(ids.nextId(), PaymentStatus.PENDING, "8877", 12, 2099, "GBP",
+        100);
+    Payment authorized = payment(ids.nextId());
+    repo.save(pending);
+    repo.save(authorized);
+
+    // when
+    boolean resolved = repo.resolvePending(pending.getId(), PaymentStatus.DECLINED);
+
+    // then
+    assertThat(resolved).isTrue();
+    assertThat(repo.findById(pending.getId())).get().extracting(Payment::getStatus)
+        .isEqualTo(PaymentStatus.DECLINED);
+    assertThat(repo.resolvePending(authorized.getId(), PaymentStatus.DECLINED)).isFalse();
+    assertThat(repo.findById(authorized.getId())).get().extracting(Payment::getStatus)
+        .isEqualTo(PaymentStatus.AUTHORIZED);
+  }
+
+  @Test
+  void whenUnknownId_thenEmpty() {
+    assertThat(repo.findById(UUID.randomUUID())).isEmpty();
+  }
+
+  private int countRows(DataSource shard) {
+    return new JdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM payments", Integer.class);
+  }
+
+  private Payment payment(UUID id) {
+    return new Payment(id, PaymentStatus.AUTHORIZED, "8877", 12, 2099, "GBP", 100);
+  }
+}
@@ -0,0 +1,221 @@
+package com.checkout.payment.gateway.repository;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.impl.TieredPaymentsRepository;
+import com.checkout.payment.gateway.repository.tiered.HotTier;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TieredPaymentsRepositoryTest {
+
+  private static final Duration HOT_RETENTION = Duration.ofHours(1);
+
+  @TempDir
+  Path directory;
+
+  private final AtomicLong now = new AtomicLong(1_000_000);
+  private TieredPaymentsRepository repo;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    repo = open();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    repo.close();
+  }
+
+  @Test
+  void whenRecentPayment_thenServedFromHotTier() throws Exception {
+    // given
+    Payment payment = payment(0);
+    repo.save(payment);
+
+    // when: maintenance runs before the payment is old enough to move
+    repo.runMaintenance();
+
+    // then
+    assertThat(repo.hotSize()).isEqualTo(1);
+    assertThat(repo.coldSegmentCount()).isZero();
+    assertThat(repo.findById(payment.getId())).contains(payment);
+  }
+
+  @Test
+  void whenOlderThanRetention_thenMovedToColdTierAndStillFound() throws Exception {
+    // given
+    List<Payment> payments = saveMany(1_000);
+
+    // when
+    now.addAndGet(HOT_RETENTION.toMillis() + 1);
+    repo.runMaintenance();
+
+    // then
+    assertThat(repo.hotSize()).isZero();
+    assertThat(repo.coldSegmentCount()).isEqualTo(1);
+    payments.forEach(payment -> assertThat(repo.findById(payment.getId()))
+        .get().extracting(Payment::getAmount).isEqualTo(payment.getAmount()));
+    assertThat(repo.findById(UUID.randomUUID())).isEmpty();
+  }
+
+  @Test
+  void whenTooManyColdSegments_thenCompactedIntoOne() throws Exception {
+    // given: more migrations than the configured number of cold segments
+    List<Payment> payments = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      payments.addAll(saveMany(200));
+      now.addAndGet(HOT_RETENTION.toMillis() + 1);
+      repo.runMaintenance();
+    }
+
+    // then
+    assertThat(repo.coldSegmentCount()).isEqualTo(1);
+    assertThat(repo.findAll()).hasSize(payments.size());
+    payments.forEach(payment -> assertThat(repo.findById(payment.getId())).isPresent());
+  }
+
+  @Test
+  void whenReopened_thenHotAndColdPaymentsRecovered() throws Exception {
+    // given: one payment in each tier
+    Payment cold = payment(1);
+    repo.save(cold);
+    now.addAndGet(HOT_RETENTION.toMillis() + 1);
+    repo.runMaintenance();
+    Payment hot = payment(2);
+    repo.save(hot);
+
+    // when
+    repo.close();
+    repo = open();
+
+    // then
+    assertThat(repo.hotSize()).isEqualTo(1);
+    assertThat(repo.findById(hot.getId())).isPresent();
+    assertThat(repo.findById(cold.getId())).isPresent();
+  }
+
+  @Test
+  void whenColdPendingPaymentResolved_thenOutcomeSurvivesMigrationAndCompaction()
+      throws Exception {
+    // given: a pending payment in the cold tier
+    Payment pending = new Payment(UUID.randomUUID(), PaymentStatus.PENDING, "8877", 12, 2099,
+        "GBP", 1);
+    repo.save(pending);
+    now.addAndGet(HOT_RETENTION.toMillis() + 1);
+    repo.runMaintenance();
+
+    // when
+    assertThat(repo.resolvePending(pending.getId(), PaymentStatus.AUTHORIZED)).isTrue();
+
+    // then: the outcome wins over the pending copy in every tier and after reopening
+    assertThat(repo.resolvePending(pending.getId(), PaymentStatus.DECLINED)).isFalse();
+    assertThat(repo.findById(pending.getId())).get().extracting(Payment::getStatus)
+        .isEqualTo(PaymentStatus.AUTHORIZED);
+    for (int i = 0; i < 2; i++) {
+      // each round adds a segment, so the second one compacts them
+      repo.save(payment(i));
+      now.addAndGet(HOT_RETENTION.toMillis() + 1);
+      repo.runMaintenance();
+      assertThat(repo.findById(pending.getId())).get().extracting(Payment::getStatus)
+          .isEqualTo(PaymentStatus.AUTHORIZED);
+    }
+    repo.close();
+    repo = open();
+    assertThat(repo.coldSegmentCount()).isEqualTo(1);
+    assertThat(repo.findAll()).hasSize(3);
+    assertThat(repo.findById(pending.getId())).get().extracting(Payment::getStatus)
+        .isEqualTo(PaymentStatus.AUTHORIZED);
+    List<Payment> stillPending = new ArrayList<>();
+    repo.forEachWithStatus(PaymentStatus.PENDING, stillPending::add);
+    assertThat(stillPending).isEmpty();
+  }
+
+  @Test
+  void whenStoredAgainWhileMigrating_thenKeptInHotTier() throws Exception {
+    // given: a migration took the pending payment, which is then stored again resolved
+    try (HotTier hot = new HotTier(directory.resolve("migrating.journal"))) {
+      Payment pending = new Payment(UUID.randomUUID(), PaymentStatus.PENDING, "8877", 12, 2099,
+          "GBP", 1);
+      hot.put(pending, 1);
+      List<HotTier.Entry> expired = hot.storedBefore(2);
+      Payment resolved = new Payment(pending.getId(), PaymentStatus.AUTHORIZED, "8877", 12, 2099,
+          "GBP", 1);
+      hot.put(resolved, 3);
+
+      // when
+      hot.removeAll(expired);
+
+      // then: only the copy the migration took is dropped, in memory and in the journal
+      assertThat(hot.get(pending.getId())).isSameAs(resolved);
+      hot.close();
+      try (HotTier reopened = new HotTier(directory.resolve("migrating.journal"))) {
+        assertThat(reopened.get(pending.getId())).extracting(Payment::getStatus)
+            .isEqualTo(PaymentStatus.AUTHORIZED);
+      }
+    }
+  }
+
+  @Test
+  void whenIdRangeScanned_thenPaymentsInRangeFromBothTiers() throws Exception {
+    // given: time-ordered ids spread over several cold segments and the hot tier
+    TimeOrderedPaymentIdGenerator ids = new TimeOrderedPaymentIdGenerator(now::get);
+    List<Payment> payments = new ArrayList<>();
+    for (int segment = 0; segment < 3; segment++) {
+      for (int i = 0; i < 500; i++) {
+        now.incrementAndGet();
+        Payment payment = new Payment(ids.nextId(),
+            i % 5 == 0 ? PaymentStatus.DECLINED : PaymentStatus.AUTHORIZED, "8877", 12, 2099,
+            "GBP", i + 1);
+        repo.save(payment);
+        payments.add(payment);
+      }
+      if (segment < 2) {
+        now.addAndGet(HOT_RETENTION.toMillis() + 1);
+        repo.runMaintenance();
+      }
+    }
+    UUID fromId = payments.get(300).getId();
+    UUID toId = payments.get(1_200).getId();
+
+    // when
+    List<Payment> scanned = new ArrayList<>();
+    repo.forEachInIdRange(PaymentStatus.AUTHORIZED, fromId, toId, scanned::add);
+
+    // then
+    assertThat(scanned).extracting(Payment::getId).containsExactlyInAnyOrderElementsOf(
+        payments.subList(300, 1_200).stream()
+            .filter(payment -> payment.getStatus() == PaymentStatus.AUTHORIZED)
+            .map(Payment::getId)
+            .toList());
+  }
+
+  private TieredPaymentsRepository open() throws Exception {
+    return new TieredPaymentsRepository(directory, HOT_RETENTION, 2, now::get);
+  }
+
+  private List<Payment> saveMany(int count) {
+    List<Payment> payments = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Payment payment = payment(i);
+      repo.save(payment);
+      payments.add(payment);
+    }
+    return payments;
+  }
+
+  private Payment payment(int amount) {
+    return new Payment(UUID.randomUUID(), PaymentStatus.AUTHORIZED, "8877", 12, 2099, "GBP",
+        amount + 1);
+  }
+}
@@ -0,0 +1,128 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import com.checkout.payment.gateway.configuration.AcquirerProperties;
+import com.checkout.payment.gateway.exception.AcquirerUnavailableException;
+import com.checkout.payment.gateway.exception.DeadlineExceededException;
+import com.checkout.payment.gateway.model.api.bank.BankAcquiryRequest;
+import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
+import com.checkout.payment.gateway.service.impl.BankHttpClient;
+import com.checkout.payment.gateway.throttling.RetryBudget;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BankHttpClientTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+  private AcquirerProperties properties;
+
+  @BeforeEach
+  void setUp() {
+    properties = new AcquirerProperties();
+    properties.setUrl("http://acquirer");
+    properties.getRetry().setMaxAttempts(3);
+    properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+  }
+
+  @Test
+  void whenAcquirerUnavailableOnce_thenRetriedAndAuthorized() {
+    // given
+    BankHttpClient client = client(1, new RetryBudget(0.1, 10));
+
+    // when
+    BankAcquiryResponse response = client.charge(request(), Deadline.after(Duration.ofSeconds(5)));
+
+    // then
+    assertThat(response.isAuthorized()).isTrue();
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void whenRetryBudgetSpent_thenNotRetried() {
+    // given: no retries left in the budget
+    BankHttpClient client = client(1, new RetryBudget(0.1, 0));
+
+    // when + then
+    assertThatThrownBy(() -> client.charge(request(), Deadline.after(Duration.ofSeconds(5))))
+        .isInstanceOf(AcquirerUnavailableException.class);
+    assertThat(calls).hasValue(1);
+  }
+
+  @Test
+  void whenAcquirerAlwaysUnavailable_thenGivesUpAfterMaxAttempts() {
+    BankHttpClient client = client(Integer.MAX_VALUE, new RetryBudget(0.1, 10));
+
+    assertThatThrownBy(() -> client.charge(request(), Deadline.after(Duration.ofSeconds(5))))
+        .isInstanceOf(AcquirerUnavailableException.class);
+    assertThat(calls).hasValue(3);
+  }
+
+  @Test
+  void whenAcquirerSlowerThanDeadline_thenDeadlineExceeded() {
+    // given: an acquirer that never answers
+    WebClient.Builder builder = WebClient.builder()
+        .exchangeFunction(request -> Mono.never());
+    BankHttpClient client = new BankHttpClient(builder, properties, new RetryBudget(0.1, 10),
+        BinTableRegistry.disabled());
+
+    // when + then
+    assertThatThrownBy(() -> client.charge(request(), Deadline.after(Duration.ofMillis(50))))
+        .isInstanceOf(DeadlineExceededException.class);
+  }
+
+  @Test
+  void whenCardSchemeHasRoute_thenSentToItsAcquirer() throws Exception {
+    // given
+    List<String> hosts = new CopyOnWriteArrayList<>();
+    WebClient.Builder builder = WebClient.builder()
+        .exchangeFunction(request -> {
+          hosts.add(request.url().getHost());
+          return Mono.just(ClientResponse.create(HttpStatus.OK)
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .body("{\"authorized\":true,\"authorization_code\":\"abc\"}")
+              .build());
+        });
+    properties.getRoutes().put("VISA", "http://visa-acquirer");
+    BankHttpClient client = new BankHttpClient(builder, properties, new RetryBudget(0.1, 10),
+        BinTableRegistry.load(new ClassPathResource("bin-ranges.csv")));
+
+    // when
+    client.charge(new BankAcquiryRequest("4111111111111111", "12/2099", "GBP", 100, "123"),
+        Deadline.after(Duration.ofSeconds(5)));
+    client.charge(request(), Deadline.after(Duration.ofSeconds(5)));
+
+    // then
+    assertThat(hosts).containsExactly("visa-acquirer", "acquirer");
+  }
+
+  private BankHttpClient client(int unavailableResponses, RetryBudget budget) {
+    WebClient.Builder builder = WebClient.builder()
+        .exchangeFunction(request -> Mono.fromSupplier(() -> {
+          if (calls.incrementAndGet() <= unavailableResponses) {
+            return ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build();
+          }
+          return ClientResponse.create(HttpStatus.OK)
+              .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+              .body("{\"authorized\":true,\"authorization_code\":\"abc\"}")
+              .build();
+        }));
+    return new BankHttpClient(builder, properties, budget, BinTableRegistry.disabled());
+  }
+
+  private static BankAcquiryRequest request() {
+    return new BankAcquiryRequest("2222405343248877", "12/2099", "GBP", 100, "123");
+  }
+}
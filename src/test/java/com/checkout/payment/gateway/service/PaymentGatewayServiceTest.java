@@ -1,45 +1,79 @@
 package com.checkout.payment.gateway.service;
 
+import com.checkout.payment.gateway.cache.PaymentResponseCache;
+import com.checkout.payment.gateway.cache.SerializedPayment;
 import com.checkout.payment.gateway.model.enums.PaymentStatus;
 import com.checkout.payment.gateway.exception.AcquirerUnavailableException;
+import com.checkout.payment.gateway.exception.DeadlineExceededException;
 import com.checkout.payment.gateway.exception.InvalidRequestException;
+import com.checkout.payment.gateway.exception.ShuttingDownException;
 import com.checkout.payment.gateway.model.api.bank.BankAcquiryResponse;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
 import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.repository.PaymentIntentLog;
 import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.repository.index.PaymentIdFilter;
 import com.checkout.payment.gateway.service.impl.PaymentGatewayServiceImpl;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import com.checkout.payment.gateway.shutdown.DrainReport;
+import com.checkout.payment.gateway.shutdown.InFlightPayments;
+import com.checkout.payment.gateway.throttling.CardVelocityLimiter;
 import com.checkout.payment.gateway.validation.PaymentRequestValidator;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.*;
+import org.mockito.InOrder;
+import java.time.Duration;
 import java.time.YearMonth;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.springframework.util.unit.DataSize;
 
 import static org.mockito.Mockito.*;
 import static org.assertj.core.api.Assertions.*;
 
 public class PaymentGatewayServiceTest {
 
+  static final String MERCHANT = "merchant-1";
+
   PaymentsRepository repo;
   BankClient acquirer;
   PaymentGatewayService service;
   PaymentRequestValidator validator;
+  PaymentIdFilter idFilter;
+  PaymentIntentLog intentLog;
+  WebhookPublisher webhookPublisher;
+  InFlightPayments inFlightPayments;
 
   @BeforeEach
   void setUp() {
     repo = mock(PaymentsRepository.class);
     acquirer = mock(BankClient.class);
     validator = mock(PaymentRequestValidator.class);
-    service = new PaymentGatewayServiceImpl(repo, acquirer, validator);
+    idFilter = new PaymentIdFilter(repo, true, 1000, 0.01, false, 1,
+        true, Duration.ofMinutes(5), "time-ordered");
+    intentLog = mock(PaymentIntentLog.class);
+    webhookPublisher = mock(WebhookPublisher.class);
+    inFlightPayments = new InFlightPayments();
+    service = new PaymentGatewayServiceImpl(repo, acquirer, validator,
+        new TimeOrderedPaymentIdGenerator(), idFilter, intentLog,
+        new CardVelocityLimiter(new byte[32], 3, 1000, Duration.ofMinutes(10), 10, 1024, 256,
+            System::currentTimeMillis), webhookPublisher,
+        new PaymentResponseCache(new ObjectMapper(), DataSize.ofMegabytes(1)),
+        inFlightPayments);
   }
 
   @Test
   void whenAcquirerAuthorizes_paymentAuthorized() {
     // given: card ends with an odd number
-    when(acquirer.charge(any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
 
     // when: processing a payment
-    PaymentResponse resp = service.processPayment(validReq("2222405343248877"));
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248877"), deadline());
 
     // then: payment is authorized
     assertThat(resp.getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
@@ -49,10 +83,10 @@ public class PaymentGatewayServiceTest {
   @Test
   void whenAcquirerDeclines_paymentDeclined() {
     // given: card ends with an even number
-    when(acquirer.charge(any())).thenReturn(new BankAcquiryResponse(false, null));
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(false, null));
 
     // when: processing a payment
-    PaymentResponse resp = service.processPayment(validReq("2222405343248876"));
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248876"), deadline());
 
     // then: payment is declined
     assertThat(resp.getStatus()).isEqualTo(PaymentStatus.DECLINED);
@@ -61,15 +95,87 @@ public class PaymentGatewayServiceTest {
   @Test
   void whenAcquirerUnavailable_paymentDeclined() {
     // given: card ends with a zero
-    when(acquirer.charge(any())).thenThrow(new AcquirerUnavailableException("Acquirer unavailable", null));
+    when(acquirer.charge(any(), any())).thenThrow(new AcquirerUnavailableException("Acquirer unavailable", null));
 
     // when: processing a payment
-    PaymentResponse resp = service.processPayment(validReq("2222405343248870"));
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248870"), deadline());
 
     // then: payment is declined
     assertThat(resp.getStatus()).isEqualTo(PaymentStatus.DECLINED);
   }
 
+  @Test
+  void whenCardUsedTooOften_paymentRejectedWithoutAcquirerCall() {
+    // given: the limit of 3 attempts per card is used up
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+    for (int i = 0; i < 3; i++) {
+      service.processPayment(MERCHANT, validReq("2222405343248877"), deadline());
+    }
+
+    // when
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248877"), deadline());
+
+    // then: rejected, while another card is still processed
+    assertThat(resp.getStatus()).isEqualTo(PaymentStatus.REJECTED);
+    verify(acquirer, times(3)).charge(any(), any());
+    assertThat(service.processPayment(MERCHANT, validReq("5555555555554444"), deadline()).getStatus())
+        .isEqualTo(PaymentStatus.AUTHORIZED);
+  }
+
+  @Test
+  void whenAcquirerMissesDeadline_paymentPending() {
+    // given
+    when(acquirer.charge(any(), any())).thenThrow(new DeadlineExceededException("timed out"));
+
+    // when
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248877"), deadline());
+
+    // then: the card may have been charged, so the payment is kept as pending
+    assertThat(resp.getStatus()).isEqualTo(PaymentStatus.PENDING);
+    verify(repo).save(argThat(payment -> payment.getStatus() == PaymentStatus.PENDING));
+  }
+
+  @Test
+  void whenDeadlineAlreadyExpired_paymentNotProcessed() {
+    // when + then
+    assertThatThrownBy(() -> service.processPayment(MERCHANT, validReq("2222405343248877"),
+        Deadline.after(Duration.ZERO)))
+        .isInstanceOf(DeadlineExceededException.class);
+    verifyNoInteractions(acquirer, repo, intentLog);
+  }
+
+  @Test
+  void whenPaymentProcessed_intentLoggedBeforeChargeAndCompletedAfterSave() {
+    // given
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+
+    // when
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248877"), deadline());
+
+    // then: a pending intent is durable before the acquirer is called
+    InOrder inOrder = inOrder(intentLog, acquirer, repo);
+    inOrder.verify(intentLog).begin(argThat(pending -> pending.getId().equals(resp.getId())
+        && pending.getStatus() == PaymentStatus.PENDING));
+    inOrder.verify(acquirer).charge(any(), any());
+    inOrder.verify(repo).save(any());
+    inOrder.verify(intentLog).complete(resp.getId());
+  }
+
+  @Test
+  void whenPaymentProcessed_webhookPublishedAfterSave() {
+    // given
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+
+    // when
+    PaymentResponse resp = service.processPayment(MERCHANT, validReq("2222405343248877"),
+        deadline());
+
+    // then: the merchant is only notified of payments that are stored
+    InOrder inOrder = inOrder(repo, webhookPublisher);
+    inOrder.verify(repo).save(any());
+    inOrder.verify(webhookPublisher).paymentProcessed(MERCHANT, resp);
+  }
+
   @Test
   void whenExpiryDateInPast_paymentRejected() {
     // given: a payment request with past expiry date
@@ -90,11 +196,11 @@ public class PaymentGatewayServiceTest {
         .when(validator).validate(req);
 
     // when
-    PaymentResponse resp = service.processPayment(req);
+    PaymentResponse resp = service.processPayment(MERCHANT, req, deadline());
 
     // then: payment is rejected and bank is not called
     assertThat(resp.getStatus()).isEqualTo(PaymentStatus.REJECTED);
-    verifyNoInteractions(acquirer);
+    verifyNoInteractions(acquirer, intentLog, webhookPublisher);
   }
 
   // java
@@ -137,6 +243,100 @@ public class PaymentGatewayServiceTest {
         .hasMessageContaining("Payment not found");
   }
 
+  @Test
+  void getPaymentById_unknownIdAnsweredByFilter() {
+    // given: the filter has been built and knows only about a processed payment
+    idFilter.rebuild();
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+    PaymentResponse processed = service.processPayment(MERCHANT, validReq("2222405343248877"),
+        deadline());
+    when(repo.findById(processed.getId())).thenReturn(Optional.of(new Payment(
+        processed.getId(), processed.getStatus(), processed.getCardNumberLastFour(),
+        processed.getExpiryMonth(), processed.getExpiryYear(), processed.getCurrency(),
+        processed.getAmount())));
+
+    // when + then: unknown id is not found without touching the repository
+    UUID unknown = UUID.randomUUID();
+    assertThatThrownBy(() -> service.getPaymentById(unknown))
+        .isInstanceOf(com.checkout.payment.gateway.exception.NotFoundException.class)
+        .hasMessageContaining("Payment not found");
+    verify(repo, never()).findById(unknown);
+
+    // and the processed payment still goes to the repository
+    assertThat(service.getPaymentById(processed.getId()).getId()).isEqualTo(processed.getId());
+  }
+
+  @Test
+  void whenPaymentProcessed_serializedLookupServedWithoutRepository() {
+    // given
+    when(acquirer.charge(any(), any())).thenReturn(new BankAcquiryResponse(true, "abc"));
+    PaymentResponse processed = service.processPayment(MERCHANT, validReq("2222405343248877"),
+        deadline());
+
+    // when
+    SerializedPayment first = service.getSerializedPaymentById(processed.getId());
+    SerializedPayment second = service.getSerializedPaymentById(processed.getId());
+
+    // then: serialized once at save time
+    assertThat(new String(first.json())).contains(processed.getId().toString(), "Authorized");
+    assertThat(second).isSameAs(first);
+    verify(repo, never()).findById(processed.getId());
+  }
+
+  @Test
+  void whenDraining_newPaymentRefusedWithoutCallingAcquirer() throws Exception {
+    // given
+    inFlightPayments.drain(Duration.ZERO);
+
+    // when + then
+    assertThatThrownBy(() -> service.processPayment(MERCHANT, validReq("2222405343248877"),
+        deadline()))
+        .isInstanceOf(ShuttingDownException.class);
+    verifyNoInteractions(acquirer, intentLog);
+  }
+
+  @Test
+  void whenDraining_paymentAtAcquirerFinishesAndIsSaved() throws Exception {
+    // given: a payment waiting for the acquirer
+    CountDownLatch atAcquirer = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(acquirer.charge(any(), any())).thenAnswer(invocation -> {
+      atAcquirer.countDown();
+      release.await();
+      return new BankAcquiryResponse(true, "abc");
+    });
+    CompletableFuture<PaymentResponse> payment = CompletableFuture.supplyAsync(
+        () -> service.processPayment(MERCHANT, validReq("2222405343248877"), deadline()));
+    atAcquirer.await();
+
+    // when: the drain is waiting before the acquirer answers
+    CompletableFuture<DrainReport> drain = new CompletableFuture<>();
+    Thread drainer = new Thread(() -> {
+      try {
+        drain.complete(inFlightPayments.drain(Duration.ofSeconds(10)));
+      } catch (InterruptedException e) {
+        drain.completeExceptionally(e);
+      }
+    });
+    drainer.start();
+    while (drainer.getState() != Thread.State.TIMED_WAITING) {
+      Thread.onSpinWait();
+    }
+    release.countDown();
+
+    // then
+    DrainReport report = drain.get(10, TimeUnit.SECONDS);
+    assertThat(report.inFlightAtStart()).isOne();
+    assertThat(report.drained()).isOne();
+    assertThat(report.unfinished()).isEmpty();
+    assertThat(payment.get().getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+    verify(repo).save(any());
+  }
+
+  private Deadline deadline() {
+    return Deadline.after(Duration.ofSeconds(10));
+  }
+
   private PaymentRequest validReq(String pan) {
     return new PaymentRequest(pan, 12, 2099, "GBP", 100, "123");
   }
@@ -0,0 +1,67 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentIdGeneratorTest {
+
+  private static final long FIXED_MILLIS = 1_760_000_000_000L;
+
+  @Test
+  void whenGenerated_thenVersion7WithRfcVariant() {
+    UUID id = new TimeOrderedPaymentIdGenerator().nextId();
+
+    assertThat(id.version()).isEqualTo(7);
+    assertThat(id.variant()).isEqualTo(2);
+  }
+
+  @Test
+  void whenGenerated_thenTimestampIsEmbedded() {
+    PaymentIdGenerator generator = new TimeOrderedPaymentIdGenerator(() -> FIXED_MILLIS);
+
+    UUID id = generator.nextId();
+
+    assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(FIXED_MILLIS);
+  }
+
+  @Test
+  void whenSameMillisecond_thenIdsStrictlyIncrease() {
+    // given: a clock that never moves, so the sequence must overflow into the next millisecond
+    PaymentIdGenerator generator = new TimeOrderedPaymentIdGenerator(() -> FIXED_MILLIS);
+
+    // when + then
+    UUID previous = generator.nextId();
+    for (int i = 0; i < 10_000; i++) {
+      UUID next = generator.nextId();
+      assertThat(next).isGreaterThan(previous);
+      previous = next;
+    }
+  }
+
+  @Test
+  void whenGeneratedConcurrently_thenIdsAreUnique() {
+    PaymentIdGenerator generator = new TimeOrderedPaymentIdGenerator();
+    Set<UUID> ids = ConcurrentHashMap.newKeySet();
+
+    IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(generator.nextId()));
+
+    assertThat(ids).hasSize(100_000);
+  }
+
+  @Test
+  void whenClockMovesBackwards_thenIdsStillIncrease() {
+    long[] now = {FIXED_MILLIS};
+    PaymentIdGenerator generator = new TimeOrderedPaymentIdGenerator(() -> now[0]);
+
+    UUID first = generator.nextId();
+    now[0] = FIXED_MILLIS - 1000;
+    UUID second = generator.nextId();
+
+    assertThat(second).isGreaterThan(first);
+  }
+}
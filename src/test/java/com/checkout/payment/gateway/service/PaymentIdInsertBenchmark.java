@@ -0,0 +1,113 @@
+package com.checkout.payment.gateway.service;
+
+import com.checkout.payment.gateway.service.impl.RandomPaymentIdGenerator;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares random (v4) and time-ordered (v7) payment ids. Excluded from `./gradlew test`,
+ * run with `./gradlew benchmark`.
+ */
+@Slf4j
+@Tag("benchmark")
+class PaymentIdInsertBenchmark {
+
+  private static final int ROWS = 500_000;
+  private static final int BATCH_SIZE = 1_000;
+  private static final int IDS_PER_THREAD = 2_000_000;
+
+  @Test
+  void insertThroughput() throws Exception {
+    // warm up both paths before measuring
+    insertRows("warmup-random", new RandomPaymentIdGenerator(), 50_000);
+    insertRows("warmup-ordered", new TimeOrderedPaymentIdGenerator(), 50_000);
+
+    double random = insertRows("random", new RandomPaymentIdGenerator(), ROWS);
+    double ordered = insertRows("ordered", new TimeOrderedPaymentIdGenerator(), ROWS);
+
+    log.info("Insert throughput, {} rows: random v4 = {} rows/s, time-ordered v7 = {} rows/s",
+        ROWS, (long) random, (long) ordered);
+    assertThat(random).isPositive();
+    assertThat(ordered).isPositive();
+  }
+
+  @Test
+  void generationThroughput() throws Exception {
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int i = 1; i <= threads; i *= 2) {
+      double random = generate(new RandomPaymentIdGenerator(), i);
+      double ordered = generate(new TimeOrderedPaymentIdGenerator(), i);
+      log.info("Id generation, {} threads: random v4 = {} ids/s, time-ordered v7 = {} ids/s",
+          i, (long) random, (long) ordered);
+    }
+  }
+
+  private double insertRows(String name, PaymentIdGenerator generator, int rows) throws Exception {
+    String url = "jdbc:h2:mem:bench-" + name + ";DB_CLOSE_DELAY=0";
+    try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+      try (Statement ddl = connection.createStatement()) {
+        ddl.execute("""
+            CREATE TABLE payments (
+              id UUID PRIMARY KEY,
+              status VARCHAR(50) NOT NULL,
+              card_number_last_four VARCHAR(4),
+              expiry_month INTEGER NOT NULL,
+              expiry_year INTEGER NOT NULL,
+              currency VARCHAR(3) NOT NULL,
+              amount INTEGER NOT NULL
+            )""");
+      }
+      connection.setAutoCommit(false);
+
+      long start = System.nanoTime();
+      try (PreparedStatement insert = connection.prepareStatement(
+          "INSERT INTO payments VALUES (?, 'AUTHORIZED', '8877', 12, 2099, 'GBP', 100)")) {
+        for (int i = 1; i <= rows; i++) {
+          insert.setObject(1, generator.nextId());
+          insert.addBatch();
+          if (i % BATCH_SIZE == 0) {
+            insert.executeBatch();
+            connection.commit();
+          }
+        }
+        insert.executeBatch();
+        connection.commit();
+      }
+      return rows / ((System.nanoTime() - start) / 1e9);
+    }
+  }
+
+  private double generate(PaymentIdGenerator generator, int threads) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    CountDownLatch done = new CountDownLatch(threads);
+    LongAdder sink = new LongAdder();
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) {
+      pool.execute(() -> {
+        long acc = 0;
+        for (int i = 0; i < IDS_PER_THREAD; i++) {
+          UUID id = generator.nextId();
+          acc ^= id.getLeastSignificantBits();
+        }
+        sink.add(acc);
+        done.countDown();
+      });
+    }
+    done.await();
+    long elapsed = System.nanoTime() - start;
+    pool.shutdown();
+    return (double) threads * IDS_PER_THREAD / (elapsed / 1e9);
+  }
+}
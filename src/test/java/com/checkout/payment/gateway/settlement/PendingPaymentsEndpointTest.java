@@ -0,0 +1,114 @@
+package com.checkout.payment.gateway.settlement;
+
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.webhook.WebhookPublisher;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PendingPaymentsEndpointTest {
+
+  private final PaymentsRepository repo = Mockito.mock(PaymentsRepository.class);
+  private final WebhookPublisher webhookPublisher = Mockito.mock(WebhookPublisher.class);
+  private final SettlementLedger ledger = Mockito.mock(SettlementLedger.class);
+  @SuppressWarnings("unchecked")
+  private final ObjectProvider<SettlementLedger> ledgerProvider =
+      Mockito.mock(ObjectProvider.class);
+  private final PendingPaymentsEndpoint endpoint =
+      new PendingPaymentsEndpoint(repo, webhookPublisher, ledgerProvider);
+
+  @BeforeEach
+  void setUp() {
+    when(ledgerProvider.getIfAvailable()).thenReturn(ledger);
+  }
+
+  @Test
+  void whenListed_thenPendingPaymentsSortedById() {
+    // given
+    UUID first = new UUID(1, 1);
+    UUID second = new UUID(2, 2);
+    doAnswer(invocation -> {
+      Consumer<Payment> action = invocation.getArgument(1);
+      action.accept(pending(second));
+      action.accept(pending(first));
+      return null;
+    }).when(repo).forEachWithStatus(eq(PaymentStatus.PENDING), any());
+
+    // when / then
+    assertThat(endpoint.pending()).extracting(PaymentResponse::getId)
+        .containsExactly(first, second);
+  }
+
+  @Test
+  void whenResolved_thenOutcomeRecorded() {
+    // given
+    UUID id = UUID.randomUUID();
+    when(repo.resolvePending(id, PaymentStatus.DECLINED)).thenReturn(true);
+
+    // when / then
+    assertThat(endpoint.resolve(id.toString(), "DECLINED")).isTrue();
+    verify(repo).resolvePending(id, PaymentStatus.DECLINED);
+    verifyNoInteractions(ledger);
+  }
+
+  @Test
+  void whenAuthorized_thenRecordedForSettlementAndMerchantNotified() {
+    // given
+    UUID id = UUID.randomUUID();
+    when(repo.resolvePending(id, PaymentStatus.AUTHORIZED)).thenReturn(true);
+    when(repo.findById(id)).thenReturn(Optional.of(
+        new Payment(id, PaymentStatus.AUTHORIZED, "4242", 12, 2030, "GBP", 100)));
+    ArgumentCaptor<PaymentResponse> published = ArgumentCaptor.forClass(PaymentResponse.class);
+
+    // when
+    boolean resolved = endpoint.resolve(id.toString(), "AUTHORIZED");
+
+    // then
+    assertThat(resolved).isTrue();
+    verify(ledger).resolved(id);
+    verify(webhookPublisher).paymentResolved(published.capture());
+    assertThat(published.getValue().getId()).isEqualTo(id);
+    assertThat(published.getValue().getStatus()).isEqualTo(PaymentStatus.AUTHORIZED);
+  }
+
+  @Test
+  void whenNotPending_thenNothingRecordedOrPublished() {
+    // given
+    UUID id = UUID.randomUUID();
+    when(repo.resolvePending(id, PaymentStatus.AUTHORIZED)).thenReturn(false);
+
+    // when / then
+    assertThat(endpoint.resolve(id.toString(), "AUTHORIZED")).isFalse();
+    verifyNoInteractions(ledger, webhookPublisher);
+  }
+
+  @Test
+  void whenOutcomeNotFinal_thenRejected() {
+    assertThatThrownBy(() -> endpoint.resolve(UUID.randomUUID().toString(), "PENDING"))
+        .isInstanceOf(InvalidEndpointRequestException.class);
+    assertThatThrownBy(() -> endpoint.resolve("not-a-uuid", "AUTHORIZED"))
+        .isInstanceOf(InvalidEndpointRequestException.class);
+    verifyNoInteractions(repo);
+  }
+
+  private static Payment pending(UUID id) {
+    return new Payment(id, PaymentStatus.PENDING, "4242", 12, 2030, "GBP", 100);
+  }
+}
@@ -0,0 +1,324 @@
+package com.checkout.payment.gateway.settlement;
+
+import com.checkout.payment.gateway.model.domain.Payment;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.repository.PaymentsRepository;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SettlementJobTest {
+
+  private static final Instant FROM = Instant.parse("2024-03-01T00:00:00Z");
+  private static final Instant TO = Instant.parse("2024-03-02T00:00:00Z");
+  private static final DateTimeFormatter BATCH_TIME =
+      DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+  @TempDir
+  Path directory;
+
+  private final AtomicLong clock = new AtomicLong(FROM.toEpochMilli());
+  private final TimeOrderedPaymentIdGenerator idGenerator =
+      new TimeOrderedPaymentIdGenerator(clock::get);
+  private final List<Payment> stored = new ArrayList<>();
+  private final PaymentsRepository repo = Mockito.mock(PaymentsRepository.class);
+  private JdbcTemplate jdbc;
+  private SettlementLedger ledger;
+  private SettlementJob job;
+
+  @BeforeEach
+  void setUp() {
+    jdbc = new JdbcTemplate(new DriverManagerDataSource(
+        "jdbc:h2:mem:settlement-test;DB_CLOSE_DELAY=-1", "sa", ""));
+    ledger = new SettlementLedger(jdbc);
+    // small chunks, so a few thousand payments are encoded by several tasks
+    job = job();
+  }
+
+  @AfterEach
+  void tearDown() {
+    job.close();
+    jdbc.execute("DROP TABLE settlement_window");
+    jdbc.execute("DROP TABLE settlement_left_out");
+  }
+
+  @Test
+  void whenWindowSettled_thenOneFilePerCurrencyWithMatchingTotals() throws Exception {
+    // given
+    for (int i = 0; i < 3_000; i++) {
+      clock.addAndGet(10);
+      store(PaymentStatus.AUTHORIZED, i % 3 == 0 ? "EUR" : "GBP", 100 + i);
+    }
+    serveRange();
+
+    // when
+    List<SettlementTotal> totals = job.settle(FROM, TO);
+
+    // then
+    assertThat(totals).extracting(SettlementTotal::currency).containsExactly("EUR", "GBP");
+    SettlementTotal eur = totals.get(0);
+    assertThat(eur.payments()).isEqualTo(1_000);
+    assertThat(eur.amount()).isEqualTo(stored.stream()
+        .filter(payment -> payment.getCurrency().equals("EUR"))
+        .mapToLong(Payment::getAmount).sum());
+
+    List<String> lines = Files.readAllLines(eur.file());
+    assertThat(lines).hasSize(1_002);
+    assertThat(lines.get(0)).isEqualTo("payment_id,amount,card_number_last_four");
+    assertThat(lines.get(lines.size() - 1))
+        .isEqualTo("total," + eur.payments() + "," + eur.amount());
+    Payment first = stored.get(0);
+    assertThat(lines).contains(first.getId() + "," + first.getAmount() + ",4242");
+  }
+
+  @Test
+  void whenPaymentsOutsideWindowOrNotAuthorized_thenNotSettled() throws Exception {
+    // given
+    clock.set(FROM.toEpochMilli() - 1);
+    store(PaymentStatus.AUTHORIZED, "USD", 1);
+    clock.set(FROM.toEpochMilli());
+    Payment inWindow = store(PaymentStatus.AUTHORIZED, "USD", 2);
+    store(PaymentStatus.DECLINED, "USD", 3);
+    clock.set(TO.toEpochMilli());
+    store(PaymentStatus.AUTHORIZED, "USD", 4);
+    serveRange();
+
+    // when
+    List<SettlementTotal> totals = job.settle(FROM, TO);
+
+    // then
+    assertThat(totals).singleElement().satisfies(total -> {
+      assertThat(total.payments()).isEqualTo(1);
+      assertThat(total.amount()).isEqualTo(inWindow.getAmount());
+    });
+  }
+
+  @Test
+  void whenPaymentsPending_thenListedInExceptionsFileAndNotSettled() throws Exception {
+    // given
+    store(PaymentStatus.AUTHORIZED, "EUR", 1);
+    Payment pending = store(PaymentStatus.PENDING, "EUR", 2);
+    serveRange();
+
+    // when
+    List<SettlementTotal> totals = job.settle(FROM, TO);
+
+    // then
+    assertThat(totals).singleElement()
+        .satisfies(total -> assertThat(total.payments()).isEqualTo(1));
+    Path exceptions = totals.get(0).file().resolveSibling(SettlementJob.PENDING_FILE);
+    assertThat(Files.readAllLines(exceptions)).containsExactly(
+        "payment_id,currency,amount,card_number_last_four",
+        pending.getId() + ",EUR,2,4242");
+  }
+
+  @Test
+  void whenRepositoryFails_thenNoPartialFileLeft() throws Exception {
+    // given
+    store(PaymentStatus.AUTHORIZED, "EUR", 1);
+    doAnswer(invocation -> {
+      Consumer<Payment> action = invocation.getArgument(3);
+      action.accept(stored.get(0));
+      throw new IllegalStateException("cursor closed");
+    }).when(repo).forEachInIdRange(eq(PaymentStatus.AUTHORIZED), any(), any(), any());
+
+    // when
+    assertThatThrownBy(() -> job.settle(FROM, TO)).isInstanceOf(IllegalStateException.class);
+
+    // then
+    try (Stream<Path> files = Files.walk(directory)) {
+      assertThat(files.filter(Files::isRegularFile)).isEmpty();
+    }
+  }
+
+  @Test
+  void whenInstancesSettleSameWindow_thenOnlyOneDoes() throws Exception {
+    // given: a second instance sharing the ledger
+    store(PaymentStatus.AUTHORIZED, "EUR", 1);
+    serveRange();
+
+    // when
+    boolean first = job.settleOnce(FROM, TO);
+    boolean second;
+    try (SettlementJob other = job()) {
+      second = other.settleOnce(FROM, TO);
+    }
+
+    // then
+    assertThat(first).isTrue();
+    assertThat(second).isFalse();
+    verify(repo, times(1)).forEachInIdRange(eq(PaymentStatus.AUTHORIZED), any(), any(), any());
+    assertThat(ledger.isSettled(FROM)).isTrue();
+  }
+
+  @Test
+  void whenRunFailed_thenWindowSettledByNextRun() throws Exception {
+    // given: the first run fails
+    doAnswer(invocation -> {
+      throw new IllegalStateException("database unavailable");
+    }).when(repo).forEachInIdRange(any(), any(), any(), any());
+    assertThat(job.settleOnce(FROM, TO)).isFalse();
+    assertThat(ledger.isSettled(FROM)).isFalse();
+
+    // when
+    serveRange();
+    boolean settled = job.settleOnce(FROM, TO);
+
+    // then
+    assertThat(settled).isTrue();
+    assertThat(ledger.isSettled(FROM)).isTrue();
+  }
+
+  @Test
+  void whenDaysMissed_thenCaughtUpOldestFirstSkippingSettledOnes() throws Exception {
+    // given: the middle one of the last three days was settled
+    serveRange();
+    ZonedDateTime lastEnd = TO.atZone(ZoneOffset.UTC).plusDays(2);
+    job.settleOnce(TO, TO.plus(Duration.ofDays(1)));
+    clearInvocations(repo);
+
+    // when
+    job.settleUnsettled(lastEnd, 3);
+
+    // then
+    verify(repo).forEachInIdRange(eq(PaymentStatus.AUTHORIZED),
+        eq(TimeOrderedPaymentIdGenerator.firstIdAt(FROM.toEpochMilli())), any(), any());
+    verify(repo).forEachInIdRange(eq(PaymentStatus.AUTHORIZED),
+        eq(TimeOrderedPaymentIdGenerator.firstIdAt(lastEnd.minusDays(1).toInstant()
+            .toEpochMilli())), any(), any());
+    verify(repo, times(2)).forEachInIdRange(eq(PaymentStatus.AUTHORIZED), any(), any(), any());
+    assertThat(ledger.isSettled(FROM)).isTrue();
+    assertThat(ledger.isSettled(TO)).isTrue();
+    assertThat(ledger.isSettled(lastEnd.minusDays(1).toInstant())).isTrue();
+  }
+
+  @Test
+  void whenPendingAuthorizedAfterWindowSettled_thenSettledByNextRun() throws Exception {
+    // given: the window is settled with the payment still pending
+    Payment pending = store(PaymentStatus.PENDING, "EUR", 7);
+    serveRange();
+    job.settleOnce(FROM, TO);
+
+    // when: it is authorized on reconciliation, and the next two days are settled
+    pending.setStatus(PaymentStatus.AUTHORIZED);
+    ledger.resolved(pending.getId());
+    Instant next = TO.plus(Duration.ofDays(1));
+    job.settleOnce(TO, next);
+    job.settleOnce(next, next.plus(Duration.ofDays(1)));
+
+    // then: it is settled by the first run after, and only by that one
+    assertThat(Files.readAllLines(batch(FROM, TO).resolve(SettlementJob.ADJUSTMENTS_FILE)))
+        .containsExactly("payment_id,window,currency,amount,card_number_last_four");
+    assertThat(Files.readAllLines(batch(TO, next).resolve(SettlementJob.ADJUSTMENTS_FILE)))
+        .containsExactly("payment_id,window,currency,amount,card_number_last_four",
+            pending.getId() + ",20240301T000000Z,EUR,7,4242");
+    assertThat(Files.readAllLines(batch(next, next.plus(Duration.ofDays(1)))
+        .resolve(SettlementJob.ADJUSTMENTS_FILE))).hasSize(1);
+  }
+
+  @Test
+  void whenAuthorizedWhileWindowSettling_thenSettledOnce() throws Exception {
+    // given: the payment is authorized after the run has read it as pending
+    store(PaymentStatus.AUTHORIZED, "EUR", 1);
+    Payment pending = store(PaymentStatus.PENDING, "EUR", 2);
+    serveRange();
+    doAnswer(invocation -> {
+      Consumer<Payment> action = invocation.getArgument(3);
+      action.accept(pending);
+      pending.setStatus(PaymentStatus.AUTHORIZED);
+      ledger.resolved(pending.getId());
+      return null;
+    }).when(repo).forEachInIdRange(eq(PaymentStatus.PENDING), any(), any(), any());
+
+    // when
+    List<SettlementTotal> totals = job.settle(FROM, TO);
+
+    // then: not in the window's file, but as an adjustment of the same run
+    assertThat(totals).singleElement().satisfies(total -> {
+      assertThat(total.payments()).isEqualTo(1);
+      assertThat(total.amount()).isEqualTo(1);
+    });
+    assertThat(Files.readAllLines(batch(FROM, TO).resolve(SettlementJob.ADJUSTMENTS_FILE)))
+        .contains(pending.getId() + ",20240301T000000Z,EUR,2,4242");
+  }
+
+  @Test
+  void whenRunFailedAfterRecordingLeftOut_thenRerunDoesNotSettleTwice() throws Exception {
+    // given: a run recorded the pending payment, then failed before the window was settled
+    Payment pending = store(PaymentStatus.PENDING, "EUR", 3);
+    ledger.tryClaim(FROM, TO, 0, Long.MAX_VALUE);
+    ledger.leftOut(FROM, List.of(pending));
+    ledger.release(FROM);
+    pending.setStatus(PaymentStatus.AUTHORIZED);
+    ledger.resolved(pending.getId());
+    serveRange();
+
+    // when
+    job.settleOnce(FROM, TO);
+
+    // then: settled with its window, not as an adjustment as well
+    assertThat(Files.readAllLines(batch(FROM, TO).resolve("settlement-EUR.csv")))
+        .contains(pending.getId() + ",3,4242");
+    assertThat(Files.readAllLines(batch(FROM, TO).resolve(SettlementJob.ADJUSTMENTS_FILE)))
+        .hasSize(1);
+  }
+
+  private Path batch(Instant from, Instant to) {
+    return directory.resolve("settlement-%s-%s".formatted(
+        BATCH_TIME.format(from), BATCH_TIME.format(to)));
+  }
+
+  private SettlementJob job() {
+    return new SettlementJob(repo, ledger, Duration.ofHours(1), directory, 4, 100);
+  }
+
+  private Payment store(PaymentStatus status, String currency, int amount) {
+    Payment payment = new Payment(idGenerator.nextId(), status, "4242", 12, 2030, currency,
+        amount);
+    stored.add(payment);
+    return payment;
+  }
+
+  /**
+   * Answers range scans from the stored payments, like the repositories do.
+   */
+  private void serveRange() {
+    doAnswer(invocation -> {
+      PaymentStatus status = invocation.getArgument(0);
+      UUID fromId = invocation.getArgument(1);
+      UUID toId = invocation.getArgument(2);
+      Consumer<Payment> action = invocation.getArgument(3);
+      stored.stream()
+          .filter(payment -> payment.getStatus() == status
+              && payment.getId().compareTo(fromId) >= 0 && payment.getId().compareTo(toId) < 0)
+          .forEach(action);
+      return null;
+    }).when(repo).forEachInIdRange(any(), any(), any(), any());
+  }
+}
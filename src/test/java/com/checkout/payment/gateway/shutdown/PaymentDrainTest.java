@@ -0,0 +1,64 @@
+package com.checkout.payment.gateway.shutdown;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentDrainTest {
+
+  @Test
+  void whenContextClosed_thenDrainedBeforeLastLifecyclePhaseStops() {
+    // given: a lifecycle bean in the graceful shutdown's phase, the last one
+    InFlightPayments inFlightPayments = new InFlightPayments();
+    List<Boolean> drainingWhenStopped = new ArrayList<>();
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.registerBean(PaymentDrain.class,
+        () -> new PaymentDrain(inFlightPayments, Duration.ofSeconds(1), context));
+    context.registerBean(GracefulShutdown.class,
+        () -> new GracefulShutdown(() -> drainingWhenStopped.add(inFlightPayments.isDraining())));
+    context.refresh();
+
+    // when
+    context.close();
+
+    // then: new payments were already refused when it stopped
+    assertThat(drainingWhenStopped).containsExactly(true);
+    assertThat(inFlightPayments.tryAdmit(UUID.randomUUID())).isFalse();
+  }
+
+  private static class GracefulShutdown implements SmartLifecycle {
+
+    private final Runnable onStop;
+    private boolean running;
+
+    GracefulShutdown(Runnable onStop) {
+      this.onStop = onStop;
+    }
+
+    @Override
+    public void start() {
+      running = true;
+    }
+
+    @Override
+    public void stop() {
+      onStop.run();
+      running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+      return running;
+    }
+
+    @Override
+    public int getPhase() {
+      return SmartLifecycle.DEFAULT_PHASE;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.checkout.payment.gateway.throttling;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardVelocityLimiterTest {
+
+  private static final String MERCHANT = "merchant-a";
+
+  private long now = 1_000_000;
+
+  @Test
+  void whenCardOverLimit_thenRejectedUntilWindowSlidesPast() {
+    // given: 3 attempts per card in 10 minutes
+    CardVelocityLimiter limiter = limiter(3, 1000);
+    for (int i = 0; i < 3; i++) {
+      assertThat(limiter.tryAttempt(MERCHANT, "2222405343248877")).isTrue();
+    }
+
+    // when + then
+    assertThat(limiter.tryAttempt(MERCHANT, "2222405343248877")).isFalse();
+    assertThat(limiter.tryAttempt(MERCHANT, "2222405343248878")).isTrue();
+
+    now += Duration.ofMinutes(11).toMillis();
+    assertThat(limiter.tryAttempt(MERCHANT, "2222405343248877")).isTrue();
+  }
+
+  @Test
+  void whenManyCardsOfOneBinDeclined_thenBinRejected() {
+    // given: a card testing run through one BIN, one attempt per card, all declined
+    CardVelocityLimiter limiter = limiter(3, 50);
+    int allowed = 0;
+
+    // when
+    for (int i = 0; i < 100; i++) {
+      String card = "411111%010d".formatted(i);
+      if (limiter.tryAttempt(MERCHANT, card)) {
+        allowed++;
+        limiter.recordDecline(MERCHANT, card);
+      }
+    }
+
+    // then
+    assertThat(allowed).isEqualTo(50);
+    assertThat(limiter.tryAttempt(MERCHANT, "5555555555554444")).isTrue();
+
+    now += Duration.ofMinutes(11).toMillis();
+    assertThat(limiter.tryAttempt(MERCHANT, "4111119999999999")).isTrue();
+  }
+
+  @Test
+  void whenLegitimateVolumeOnOneBin_thenNotRejected() {
+    // given: a popular BIN, far more attempts than the BIN limit, with the usual few declines
+    CardVelocityLimiter limiter = limiter(3, 1000);
+    int rejected = 0;
+
+    // when
+    for (int i = 0; i < 10_000; i++) {
+      String card = "411111%010d".formatted(i);
+      if (!limiter.tryAttempt(MERCHANT, card)) {
+        rejected++;
+      } else if (i % 20 == 0) {
+        limiter.recordDecline(MERCHANT, card);
+      }
+    }
+
+    // then
+    assertThat(rejected).isZero();
+  }
+
+  @Test
+  void whenCardsGoOverTheirLimit_thenEachCountedOnceAgainstBin() {
+    // given: one attempt per card, 5 failures per BIN
+    CardVelocityLimiter limiter = limiter(1, 5);
+
+    // when: 5 cards go over their limit, each retried again and again
+    for (int card = 1; card <= 5; card++) {
+      String number = "411111000000000" + card;
+      assertThat(limiter.tryAttempt(MERCHANT, number)).isTrue();
+      assertThat(limiter.tryAttempt(MERCHANT, number)).isFalse();
+    }
+
+    // then
+    assertThat(limiter.tryAttempt(MERCHANT, "4111110000000009")).isFalse();
+  }
+
+  @Test
+  void whenOneCardHammered_thenOtherCardsOfItsBinAllowed() {
+    // given
+    CardVelocityLimiter limiter = limiter(3, 1000);
+
+    // when: a single card retried far more often than the BIN allows failures
+    int allowed = 0;
+    for (int i = 0; i < 5000; i++) {
+      if (limiter.tryAttempt(MERCHANT, "4111110000000001")) {
+        allowed++;
+      }
+    }
+
+    // then
+    assertThat(allowed).isEqualTo(3);
+    assertThat(limiter.tryAttempt(MERCHANT, "4111110000000002")).isTrue();
+  }
+
+  @Test
+  void whenBinFailingAtOneMerchant_thenOtherMerchantsNotRejected() {
+    // given: card testing through one merchant blocks the BIN there
+    CardVelocityLimiter limiter = limiter(3, 50);
+    for (int i = 0; i < 50; i++) {
+      String card = "411111%010d".formatted(i);
+      limiter.tryAttempt(MERCHANT, card);
+      limiter.recordDecline(MERCHANT, card);
+    }
+
+    // when + then
+    assertThat(limiter.tryAttempt(MERCHANT, "4111119999999999")).isFalse();
+    assertThat(limiter.tryAttempt("merchant-b", "4111119999999999")).isTrue();
+  }
+
+  @Test
+  void whenDistinctCardsWellBelowWidth_thenNoneRejected() {
+    // given
+    CardVelocityLimiter limiter = limiter(1, Integer.MAX_VALUE);
+    int rejected = 0;
+
+    // when: every card is used once
+    for (int i = 0; i < 2000; i++) {
+      if (!limiter.tryAttempt(MERCHANT, "%016d".formatted(i * 7919L))) {
+        rejected++;
+      }
+    }
+
+    // then
+    assertThat(rejected).isZero();
+  }
+
+  private CardVelocityLimiter limiter(int perCard, int perBin) {
+    return new CardVelocityLimiter(new byte[32], perCard, perBin, Duration.ofMinutes(10), 10,
+        65536, 65536, () -> now);
+  }
+}
@@ -0,0 +1,174 @@
+package com.checkout.payment.gateway.throttling;
+
+import com.checkout.payment.gateway.exception.RateLimitExceededException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MerchantThrottlingTest {
+
+  private long now;
+
+  @Test
+  void whenBurstUsed_thenThrottledUntilRefilled() {
+    // given: 10 per second with a burst of 5
+    MerchantRateLimiter limiter = new MerchantRateLimiter(10, 5, 100, Set.of(), () -> now);
+
+    // when + then
+    for (int i = 0; i < 5; i++) {
+      assertThat(limiter.tryAcquire("merchant")).isZero();
+    }
+    assertThat(limiter.tryAcquire("merchant")).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+    now += TimeUnit.MILLISECONDS.toNanos(100);
+    assertThat(limiter.tryAcquire("merchant")).isZero();
+  }
+
+  @Test
+  void whenOneMerchantThrottled_thenOthersUnaffected() {
+    MerchantRateLimiter limiter = new MerchantRateLimiter(1, 1, 100, Set.of(), () -> now);
+
+    assertThat(limiter.tryAcquire("noisy")).isZero();
+    assertThat(limiter.tryAcquire("noisy")).isPositive();
+    assertThat(limiter.tryAcquire("quiet")).isZero();
+  }
+
+  @Test
+  void whenTooManyMerchants_thenNewKeysShareOneBucketAndTrackedOnesKeepTheirs() {
+    // given: room for two merchants, both tracked
+    MerchantRateLimiter limiter = new MerchantRateLimiter(1, 1, 2, Set.of(), () -> now);
+    limiter.tryAcquire("a");
+    now += TimeUnit.SECONDS.toNanos(1);
+    limiter.tryAcquire("b");
+
+    // when: a client rotates through new keys
+    assertThat(limiter.tryAcquire("random-1")).isZero();
+    assertThat(limiter.tryAcquire("random-2")).isPositive();
+    assertThat(limiter.tryAcquire("random-3")).isPositive();
+
+    // then: the tracked merchants are not affected
+    now += TimeUnit.SECONDS.toNanos(1);
+    assertThat(limiter.tryAcquire("a")).isZero();
+    assertThat(limiter.trackedMerchants()).isEqualTo(2);
+  }
+
+  @Test
+  void whenRefilled_thenEvictedMakingRoomForNewMerchants() {
+    MerchantRateLimiter limiter = new MerchantRateLimiter(1, 1, 2, Set.of(), () -> now);
+    limiter.tryAcquire("a");
+    limiter.tryAcquire("b");
+
+    now += TimeUnit.SECONDS.toNanos(2);
+    limiter.evictRefilled();
+
+    assertThat(limiter.trackedMerchants()).isZero();
+    assertThat(limiter.tryAcquire("c")).isZero();
+    assertThat(limiter.trackedMerchants()).isEqualTo(1);
+  }
+
+  @Test
+  void whenMerchantsConfigured_thenUnknownKeysShareOneBucket() {
+    MerchantRateLimiter limiter = new MerchantRateLimiter(1, 1, 100, Set.of("merchant"),
+        () -> now);
+
+    assertThat(limiter.tryAcquire("random-1")).isZero();
+    assertThat(limiter.tryAcquire("random-2")).isPositive();
+    assertThat(limiter.tryAcquire("merchant")).isZero();
+    assertThat(limiter.trackedMerchants()).isEqualTo(1);
+  }
+
+  @Test
+  void whenSlotsBusy_thenLateMerchantInterleavedWithQueuedMerchant() throws Exception {
+    // given: one slot, a merchant with a long queue already waiting
+    FairPaymentScheduler scheduler = new FairPaymentScheduler(1, 10_000, merchant -> 1.0);
+    ExecutorService pool = Executors.newFixedThreadPool(32);
+    ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    futures.add(pool.submit(() -> scheduler.run("batch", () -> await(release))));
+    for (int i = 0; i < 20; i++) {
+      futures.add(pool.submit(() -> scheduler.run("batch", () -> order.add("batch"))));
+    }
+    Thread.sleep(200);
+
+    // when: another merchant arrives behind them
+    futures.add(pool.submit(() -> scheduler.run("interactive", () -> order.add("interactive"))));
+    Thread.sleep(200);
+    release.countDown();
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    // then: it is served within the first couple of slots, not after the whole batch
+    assertThat(new ArrayList<>(order).indexOf("interactive")).isLessThan(3);
+    assertThat(scheduler.inFlight()).isZero();
+  }
+
+  @Test
+  void whenSlotsBusy_thenMerchantsAdmittedInProportionToTheirWeight() throws Exception {
+    // given: one slot, a merchant with twice the weight of the other, both with a queue
+    FairPaymentScheduler scheduler = new FairPaymentScheduler(1, 10_000,
+        merchant -> merchant.equals("heavy") ? 2.0 : 1.0);
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    futures.add(pool.submit(() -> scheduler.run("heavy", () -> await(release))));
+    Thread.sleep(100);
+    for (int i = 0; i < 6; i++) {
+      futures.add(pool.submit(() -> scheduler.run("heavy", () -> order.add("heavy"))));
+    }
+    Thread.sleep(200);
+    for (int i = 0; i < 6; i++) {
+      futures.add(pool.submit(() -> scheduler.run("light", () -> order.add("light"))));
+    }
+    Thread.sleep(200);
+
+    // when
+    release.countDown();
+    for (Future<?> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    pool.shutdown();
+
+    // then: two heavy payments for each light one while both are queued
+    assertThat(new ArrayList<>(order).subList(0, 6)).filteredOn("heavy"::equals).hasSize(4);
+  }
+
+  @Test
+  void whenQueueWaitExceeded_thenRateLimited() throws Exception {
+    FairPaymentScheduler scheduler = new FairPaymentScheduler(1, 50, merchant -> 1.0);
+    ExecutorService pool = Executors.newSingleThreadExecutor();
+    CountDownLatch release = new CountDownLatch(1);
+    Future<?> busy = pool.submit(() -> scheduler.run("a", () -> await(release)));
+    Thread.sleep(50);
+
+    assertThatThrownBy(() -> scheduler.run("b", () -> true))
+        .isInstanceOf(RateLimitExceededException.class);
+
+    release.countDown();
+    busy.get(10, TimeUnit.SECONDS);
+    pool.shutdown();
+    assertThat(scheduler.inFlight()).isZero();
+  }
+
+  private static boolean await(CountDownLatch latch) {
+    try {
+      return latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+}
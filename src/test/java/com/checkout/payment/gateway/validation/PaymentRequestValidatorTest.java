@@ -1,11 +1,13 @@
 package com.checkout.payment.gateway.validation;
 
+import com.checkout.payment.gateway.bin.BinTableRegistry;
 import com.checkout.payment.gateway.exception.InvalidRequestException;
 import com.checkout.payment.gateway.model.api.merchant.PaymentRequest;
 import java.time.YearMonth;
 import com.checkout.payment.gateway.validation.impl.PaymentRequestValidatorImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -14,8 +16,9 @@ class PaymentRequestValidatorTest {
   private PaymentRequestValidator validator;
 
   @BeforeEach
-  void setUp() {
-    validator = new PaymentRequestValidatorImpl();
+  void setUp() throws Exception {
+    validator = new PaymentRequestValidatorImpl(
+        BinTableRegistry.load(new ClassPathResource("bin-ranges.csv")));
   }
 
   @Test
@@ -96,4 +99,40 @@ class PaymentRequestValidatorTest {
         .isInstanceOf(InvalidRequestException.class)
         .hasMessageContaining("Currency must be one of GBP, USD, or EUR");
   }
+
+  @Test
+  void whenCardRangeUnknown_thenInvalidRequestException() {
+    YearMonth future = YearMonth.now().plusMonths(1);
+
+    PaymentRequest req = new PaymentRequest(
+        "9999405343248877", // not in any range
+        future.getMonthValue(),
+        future.getYear(),
+        "GBP",
+        100,
+        "123"
+    );
+
+    assertThatThrownBy(() -> validator.validate(req))
+        .isInstanceOf(InvalidRequestException.class)
+        .hasMessageContaining("Card range not supported");
+  }
+
+  @Test
+  void whenCardRangeNotSupported_thenInvalidRequestException() {
+    YearMonth future = YearMonth.now().plusMonths(1);
+
+    PaymentRequest req = new PaymentRequest(
+        "6212345678901232", // UnionPay
+        future.getMonthValue(),
+        future.getYear(),
+        "GBP",
+        100,
+        "123"
+    );
+
+    assertThatThrownBy(() -> validator.validate(req))
+        .isInstanceOf(InvalidRequestException.class)
+        .hasMessageContaining("Card range not supported");
+  }
 }
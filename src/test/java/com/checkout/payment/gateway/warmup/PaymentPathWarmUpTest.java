@@ -0,0 +1,63 @@
+package com.checkout.payment.gateway.warmup;
+
+import com.checkout.payment.gateway.bin.BinTableRegistry;
+import com.checkout.payment.gateway.service.impl.PaymentGatewayServiceImpl;
+import com.checkout.payment.gateway.service.impl.TimeOrderedPaymentIdGenerator;
+import com.checkout.payment.gateway.validation.impl.PaymentRequestValidatorImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.web.reactive.function.client.WebClient;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentPathWarmUpTest {
+
+  private final LoggingSystem loggingSystem = mock(LoggingSystem.class);
+
+  @Test
+  void whenWarmedUp_thenAllSyntheticPaymentsProcessedAndLogLevelsRestored() throws Exception {
+    // given
+    String serviceLogger = PaymentGatewayServiceImpl.class.getName();
+    when(loggingSystem.getLoggerConfiguration(serviceLogger))
+        .thenReturn(new LoggerConfiguration(serviceLogger, LogLevel.DEBUG, LogLevel.DEBUG));
+    PaymentPathWarmUp warmUp = warmUp(200);
+
+    // when
+    int payments = warmUp.warmUp();
+
+    // then
+    assertThat(payments).isEqualTo(200);
+    verify(loggingSystem).setLogLevel(serviceLogger, LogLevel.ERROR);
+    verify(loggingSystem).setLogLevel(serviceLogger, LogLevel.DEBUG);
+  }
+
+  @Test
+  void whenStarted_thenDoneBeforeWebServerListens() throws Exception {
+    // given
+    PaymentPathWarmUp warmUp = warmUp(10);
+
+    // when
+    warmUp.start();
+
+    // then: phases start in ascending order, and the web server starts in the one below
+    // its graceful shutdown
+    assertThat(warmUp.isRunning()).isTrue();
+    assertThat(warmUp.getPhase())
+        .isLessThan(WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 1);
+  }
+
+  private PaymentPathWarmUp warmUp(int iterations) throws Exception {
+    BinTableRegistry binTable = BinTableRegistry.load(new ClassPathResource("bin-ranges.csv"));
+    return new PaymentPathWarmUp(WebClient.builder(),
+        new PaymentRequestValidatorImpl(binTable), binTable, new TimeOrderedPaymentIdGenerator(),
+        new ObjectMapper(), loggingSystem, iterations, Duration.ofMinutes(1));
+  }
+}
@@ -0,0 +1,177 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.checkout.payment.gateway.configuration.WebhookProperties;
+import com.checkout.payment.gateway.model.api.merchant.PaymentResponse;
+import com.checkout.payment.gateway.model.enums.PaymentStatus;
+import com.checkout.payment.gateway.service.MerchantIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.web.reactive.function.client.WebClient;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookDispatcherTest {
+
+  private static final String API_KEY = "merchant-1";
+  private static final String MERCHANT = MerchantIds.fromApiKey(API_KEY);
+
+  private JdbcTemplate jdbc;
+  private WebhookOutbox outbox;
+  private WebhookReceiverStub receiver;
+  private WebhookDispatcher dispatcher;
+
+  @BeforeEach
+  void setUp() {
+    jdbc = new JdbcTemplate(new DriverManagerDataSource(
+        "jdbc:h2:mem:webhook-test;DB_CLOSE_DELAY=-1", "sa", ""));
+    outbox = new WebhookOutbox(jdbc);
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbc.execute("DROP TABLE webhook_outbox");
+    jdbc.execute("DROP TABLE webhook_pending_payment");
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+    if (receiver != null) {
+      receiver.close();
+    }
+  }
+
+  @Test
+  void whenEventsDue_thenDeliveredInBatches() throws Exception {
+    // given
+    receiver = new WebhookReceiverStub(0);
+    dispatcher = dispatcher(2);
+    for (int i = 0; i < 5; i++) {
+      outbox.enqueue(MERCHANT, "{\"n\":" + i + "}", System.currentTimeMillis());
+    }
+
+    // when
+    deliverAll();
+
+    // then
+    assertThat(receiver.bodies()).containsExactlyInAnyOrder(
+        "{\"events\":[{\"n\":0},{\"n\":1}]}",
+        "{\"events\":[{\"n\":2},{\"n\":3}]}",
+        "{\"events\":[{\"n\":4}]}");
+  }
+
+  @Test
+  void whenEndpointFails_thenBatchRetried() throws Exception {
+    // given
+    receiver = new WebhookReceiverStub(1);
+    dispatcher = dispatcher(10);
+    outbox.enqueue(MERCHANT, "{\"n\":0}", System.currentTimeMillis());
+
+    // when
+    deliverAll();
+
+    // then
+    assertThat(receiver.bodies()).containsExactly("{\"events\":[{\"n\":0}]}");
+  }
+
+  @Test
+  void whenMerchantHasNoEndpoint_thenEventNotSent() throws Exception {
+    // given
+    receiver = new WebhookReceiverStub(0);
+    dispatcher = dispatcher(10);
+    outbox.enqueue("unknown", "{\"n\":0}", System.currentTimeMillis());
+
+    // when
+    int sent = dispatcher.dispatchDue();
+
+    // then
+    assertThat(sent).isZero();
+    assertThat(outbox.pending()).isZero();
+  }
+
+  @Test
+  void whenInstancesClaimConcurrently_thenEachEventClaimedOnce() throws Exception {
+    // given: four instances polling the same outbox
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 2_000; i++) {
+      outbox.enqueue(MERCHANT, "{\"n\":" + i + "}", now);
+    }
+    ExecutorService instances = Executors.newFixedThreadPool(4);
+    List<Future<List<Long>>> claims = new ArrayList<>();
+
+    // when
+    for (int i = 0; i < 4; i++) {
+      WebhookOutbox instanceOutbox = new WebhookOutbox(jdbc);
+      claims.add(instances.submit(() -> {
+        List<Long> ids = new ArrayList<>();
+        List<WebhookOutbox.Event> claimed;
+        // an instance that lost a whole batch stops, the one that won it carries on
+        do {
+          claimed = instanceOutbox.claimDue(now, now + 60_000, 20);
+          claimed.forEach(event -> ids.add(event.id()));
+        } while (!claimed.isEmpty());
+        return ids;
+      }));
+    }
+    List<Long> all = new ArrayList<>();
+    for (Future<List<Long>> claim : claims) {
+      all.addAll(claim.get());
+    }
+    instances.shutdown();
+
+    // then
+    assertThat(all).hasSize(2_000).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void whenPendingPaymentResolved_thenItsMerchantNotified() throws Exception {
+    // given: a payment that went pending, whose merchant is only known at that point
+    OutboxWebhookPublisher publisher = new OutboxWebhookPublisher(outbox,
+        Map.of(MERCHANT, "http://localhost/hooks"), new ObjectMapper(), System::currentTimeMillis);
+    UUID id = UUID.randomUUID();
+    publisher.paymentProcessed(MERCHANT,
+        new PaymentResponse(id, PaymentStatus.PENDING, "4242", 12, 2030, "GBP", 100));
+
+    // when
+    publisher.paymentResolved(
+        new PaymentResponse(id, PaymentStatus.AUTHORIZED, "4242", 12, 2030, "GBP", 100));
+    publisher.paymentResolved(
+        new PaymentResponse(id, PaymentStatus.AUTHORIZED, "4242", 12, 2030, "GBP", 100));
+
+    // then: the processed and the resolved event, and the merchant forgotten after that
+    List<WebhookOutbox.Event> events = outbox.claimDue(System.currentTimeMillis(),
+        System.currentTimeMillis() + 60_000, 10);
+    assertThat(events).extracting(WebhookOutbox.Event::merchant)
+        .containsExactly(MERCHANT, MERCHANT);
+    assertThat(events.get(0).payload()).contains(WebhookEvent.PAYMENT_PROCESSED, "Pending");
+    assertThat(events.get(1).payload()).contains(WebhookEvent.PAYMENT_RESOLVED, "Authorized");
+  }
+
+  private WebhookDispatcher dispatcher(int batchSize) {
+    WebhookProperties properties = new WebhookProperties();
+    properties.setEndpoints(Map.of(API_KEY, receiver.url()));
+    properties.setBatchSize(batchSize);
+    properties.setInitialBackoff(Duration.ofMillis(10));
+    properties.setRequestTimeout(Duration.ofSeconds(5));
+    return new WebhookDispatcher(outbox, WebClient.builder(), properties,
+        System::currentTimeMillis);
+  }
+
+  private void deliverAll() throws InterruptedException {
+    long giveUpAt = System.currentTimeMillis() + 10_000;
+    while (outbox.pending() > 0 && System.currentTimeMillis() < giveUpAt) {
+      dispatcher.dispatchDue();
+      Thread.sleep(20);
+    }
+    assertThat(outbox.pending()).isZero();
+  }
+}
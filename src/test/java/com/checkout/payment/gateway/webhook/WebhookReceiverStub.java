@@ -0,0 +1,48 @@
+package com.checkout.payment.gateway.webhook;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merchant webhook endpoint on a local port, recording the request bodies it receives. The first
+ * {@code failures} requests are answered with a 500.
+ */
+class WebhookReceiverStub implements AutoCloseable {
+
+  private final HttpServer server;
+  private final List<String> bodies = new CopyOnWriteArrayList<>();
+  private final AtomicInteger failuresLeft;
+
+  WebhookReceiverStub(int failures) throws IOException {
+    this.failuresLeft = new AtomicInteger(failures);
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/webhooks", exchange -> {
+      String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+      int status = failuresLeft.getAndDecrement() > 0 ? 500 : 204;
+      if (status == 204) {
+        bodies.add(body);
+      }
+      exchange.sendResponseHeaders(status, -1);
+      exchange.close();
+    });
+    server.start();
+  }
+
+  String url() {
+    return "http://localhost:" + server.getAddress().getPort() + "/webhooks";
+  }
+
+  List<String> bodies() {
+    return bodies;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}